@@ -1,33 +1,158 @@
 package com.demo.bookstore;
 
+import com.demo.bookstore.exception.AuthorNotFoundExceptionMapper;
+import com.demo.bookstore.exception.BookNotFoundExceptionMapper;
+import com.demo.bookstore.exception.CartNotFoundExceptionMapper;
+import com.demo.bookstore.exception.CustomerNotFoundExceptionMapper;
+import com.demo.bookstore.exception.IdempotencyConflictExceptionMapper;
+import com.demo.bookstore.exception.InvalidInputExceptionMapper;
+import com.demo.bookstore.exception.OutOfStockExceptionMapper;
+import com.demo.bookstore.exception.ReportTimeoutExceptionMapper;
+import com.demo.bookstore.filter.AdmissionControlFilter;
+import com.demo.bookstore.filter.ClusterRoutingFilter;
+import com.demo.bookstore.filter.ReadOnlyReplicaFilter;
+import com.demo.bookstore.provider.BinaryFormatProvider;
+import com.demo.bookstore.provider.BinaryFormats;
+import com.demo.bookstore.provider.ProjectionWriter;
+import com.demo.bookstore.resource.AnalyticsResource;
+import com.demo.bookstore.resource.AuthorResource;
+import com.demo.bookstore.resource.BookResource;
+import com.demo.bookstore.resource.CartResource;
+import com.demo.bookstore.resource.ClusterResource;
+import com.demo.bookstore.resource.CustomerResource;
+import com.demo.bookstore.resource.EventResource;
+import com.demo.bookstore.resource.HealthResource;
+import com.demo.bookstore.resource.MetricsResource;
+import com.demo.bookstore.resource.OrderResource;
+import com.demo.bookstore.resource.ReportResource;
+import com.demo.bookstore.util.Cluster;
+import com.demo.bookstore.util.Health;
+import com.demo.bookstore.util.ReplicaClient;
+import com.demo.bookstore.util.ReplicationServer;
+import com.demo.bookstore.util.WarmUp;
+
 import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpContainer;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpContainerProvider;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.jackson.JacksonFeature;
+import org.glassfish.jersey.media.sse.SseFeature;
 import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.ServerProperties;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 
 /**
  * Main class that starts the Grizzly HTTP server for the BookStore API
  */
 public class Main {
     // Base URI the Grizzly HTTP server will listen on
-    public static final String BASE_URI = "http://localhost:8080/api/";
+    public static final String BASE_URI = "http://localhost:" + Integer.getInteger("bookstore.port", 8080) + "/api/";
+
+    /**
+     * Resources and providers are registered by hand rather than found by scanning packages,
+     * and Jersey's other classpath lookups are switched off, which saves most of Jersey's
+     * share of the startup time. New resources, exception mappers and providers must be
+     * added here.
+     * @return Jersey configuration of the application
+     */
+    public static ResourceConfig resourceConfig() {
+        final ResourceConfig rc = new ResourceConfig()
+                .property(ServerProperties.METAINF_SERVICES_LOOKUP_DISABLE, true)
+                .property(ServerProperties.FEATURE_AUTO_DISCOVERY_DISABLE, true)
+                .property(ServerProperties.WADL_FEATURE_DISABLE, true);
+
+        rc.register(JacksonFeature.class);
+        rc.register(SseFeature.class);
+
+        rc.registerClasses(
+                AnalyticsResource.class,
+                AuthorResource.class,
+                BookResource.class,
+                CartResource.class,
+                ClusterResource.class,
+                CustomerResource.class,
+                EventResource.class,
+                HealthResource.class,
+                MetricsResource.class,
+                OrderResource.class,
+                ReportResource.class);
+
+        rc.registerClasses(
+                AuthorNotFoundExceptionMapper.class,
+                BookNotFoundExceptionMapper.class,
+                CartNotFoundExceptionMapper.class,
+                CustomerNotFoundExceptionMapper.class,
+                IdempotencyConflictExceptionMapper.class,
+                InvalidInputExceptionMapper.class,
+                OutOfStockExceptionMapper.class,
+                ReportTimeoutExceptionMapper.class);
+
+        rc.registerClasses(BinaryFormatProvider.class, ProjectionWriter.class);
+
+        // Shed excess load before it reaches the resources
+        rc.register(AdmissionControlFilter.class);
+        return rc;
+    }
 
     /**
      * Starts Grizzly HTTP server exposing JAX-RS resources defined in this application.
      * @return Grizzly HTTP server.
      */
     public static HttpServer startServer() {
-        // Create a resource config that scans for JAX-RS resources and providers
-        final ResourceConfig rc = new ResourceConfig().packages("com.demo.bookstore.resource", "com.demo.bookstore.exception");
+        final ResourceConfig rc = resourceConfig();
+
+        if (Cluster.isEnabled()) {
+            // Send requests for other nodes' customers to their owners
+            rc.register(ClusterRoutingFilter.class);
+        }
+
+        if (ReplicaClient.isReplica()) {
+            // Serve catalog reads only, with data copied from the primary
+            rc.register(ReadOnlyReplicaFilter.class);
+        }
+
+        final GrizzlyHttpContainer container = new GrizzlyHttpContainerProvider().createContainer(GrizzlyHttpContainer.class, rc);
+        if (WarmUp.isEnabled()) {
+            // Compile the hot paths before the listener is bound and traffic arrives
+            WarmUp.run(container, ReplicaClient.isReplica());
+        }
+
+        if (ReplicaClient.isReplica()) {
+            ReplicaClient.startFromSystemProperties();
+        } else {
+            // Initialize sample data
+            com.demo.bookstore.util.DataInitializer.initData();
+            ReplicationServer.startFromSystemProperties();
+        }
 
-        // Initialize sample data
-        com.demo.bookstore.util.DataInitializer.initData();
-        
         // Create and start a new instance of grizzly http server
         // exposing the Jersey application at BASE_URI
-        return GrizzlyHttpServerFactory.createHttpServer(URI.create(BASE_URI), rc);
+        final HttpServer server = GrizzlyHttpServerFactory.createHttpServer(URI.create(BASE_URI), container, false, null, false);
+
+        // Bound what a slow client can have queued, so writes to it block and event
+        // streams can detect and disconnect it instead of buffering without limit
+        for (NetworkListener listener : server.getListeners()) {
+            listener.getTransport().getAsyncQueueIO().getWriter()
+                    .setMaxPendingBytesPerConnection(Integer.getInteger("bookstore.maxPendingWriteBytes", 256 * 1024));
+        }
+        try {
+            server.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start server at " + BASE_URI, e);
+        }
+        if (Cluster.isEnabled()) {
+            Health.starting("Joining the cluster");
+            Cluster.joinFromSystemProperties();
+        }
+        Health.started();
+        return server;
     }
 
     /**
@@ -37,8 +162,51 @@ public class Main {
      */
     public static void main(String[] args) throws IOException {
         final HttpServer server = startServer();
+        if (Boolean.getBoolean("bookstore.trainingRun")) {
+            trainingRun();
+            server.shutdownNow();
+            return;
+        }
         System.out.println(String.format("BookStore API started at %s\nHit enter to stop the server...", BASE_URI));
         System.in.read();
         server.shutdownNow();
     }
+
+    /**
+     * Send the server a few typical requests, so that a run with
+     * {@code -XX:ArchiveClassesAtExit} archives the classes that serve them as well as those
+     * loaded at startup. Used by the {@code cds} build profile.
+     */
+    private static void trainingRun() throws IOException {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        String[][] requests = {
+            {"GET", "books", null},
+            {"GET", "books/1", null},
+            {"GET", "books?fields=id,title,price", null},
+            {"GET", "books/0", null},
+            {"GET", "authors/1?expand=books", null},
+            {"GET", "customers/1", null},
+            {"POST", "customers/1/cart/items", "{\"bookId\":1,\"quantity\":1}"},
+            {"GET", "customers/1/cart", null},
+            {"POST", "customers/1/orders", null},
+            {"GET", "customers/1/orders", null},
+            {"GET", "metrics", null},
+        };
+        for (String[] request : requests) {
+            for (String accept : new String[] {"application/json", BinaryFormats.APPLICATION_SMILE}) {
+                HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(BASE_URI + request[1])).header("Accept", accept);
+                if (request[2] != null) {
+                    builder.header("Content-Type", "application/json");
+                }
+                builder.method(request[0], request[2] != null
+                        ? HttpRequest.BodyPublishers.ofString(request[2]) : HttpRequest.BodyPublishers.noBody());
+                try {
+                    client.send(builder.build(), HttpResponse.BodyHandlers.discarding());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
 } 
\ No newline at end of file
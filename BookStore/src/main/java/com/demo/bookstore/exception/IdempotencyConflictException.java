@@ -0,0 +1,11 @@
+package com.demo.bookstore.exception;
+
+/**
+ * Exception thrown when a request repeats an idempotency key whose first request is still running
+ */
+public class IdempotencyConflictException extends RuntimeException {
+    
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,24 @@
+package com.demo.bookstore.exception;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.Provider;
+
+/**
+ * Exception mapper for IdempotencyConflictException
+ */
+@Provider
+public class IdempotencyConflictExceptionMapper implements ExceptionMapper<IdempotencyConflictException> {
+
+    @Override
+    public Response toResponse(IdempotencyConflictException exception) {
+        ErrorResponse errorResponse = new ErrorResponse(Response.Status.CONFLICT.getStatusCode(), exception.getMessage());
+        
+        return Response
+                .status(Response.Status.CONFLICT)
+                .entity(errorResponse)
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+}
@@ -0,0 +1,15 @@
+package com.demo.bookstore.exception;
+
+/**
+ * Exception thrown when a report cannot finish within its time budget
+ */
+public class ReportTimeoutException extends RuntimeException {
+    
+    public ReportTimeoutException(String message) {
+        super(message);
+    }
+    
+    public ReportTimeoutException(long timeoutMillis) {
+        super("Report did not complete within " + timeoutMillis + " ms and was cancelled");
+    }
+}
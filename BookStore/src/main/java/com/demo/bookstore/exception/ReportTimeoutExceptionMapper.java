@@ -0,0 +1,24 @@
+package com.demo.bookstore.exception;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.ExceptionMapper;
+import jakarta.ws.rs.ext.Provider;
+
+/**
+ * Exception mapper for ReportTimeoutException
+ */
+@Provider
+public class ReportTimeoutExceptionMapper implements ExceptionMapper<ReportTimeoutException> {
+
+    @Override
+    public Response toResponse(ReportTimeoutException exception) {
+        ErrorResponse errorResponse = new ErrorResponse(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(), exception.getMessage());
+        
+        return Response
+                .status(Response.Status.SERVICE_UNAVAILABLE)
+                .entity(errorResponse)
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+}
@@ -0,0 +1,117 @@
+package com.demo.bookstore.filter;
+
+import com.demo.bookstore.exception.ErrorResponse;
+import com.demo.bookstore.resource.HealthResource;
+import com.demo.bookstore.resource.OrderResource;
+import com.demo.bookstore.util.ConcurrencyLimiter;
+import com.demo.bookstore.util.Metrics;
+import com.demo.bookstore.util.RateLimiter;
+
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.ResourceInfo;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.ext.Provider;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Admission control that runs before any resource method. Each customer (by the
+ * {@code customerId} path parameter, or else the {@code X-Client-Key} header) has its own
+ * token bucket, and a global cap limits requests in flight with part of it reserved for
+ * checkout. Refused requests get a 429 or 503 with {@code Retry-After}. Health checks are
+ * never refused.
+ */
+@Provider
+@Priority(Priorities.AUTHENTICATION)
+public class AdmissionControlFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final Logger LOGGER = Logger.getLogger(AdmissionControlFilter.class.getName());
+    private static final String CLIENT_KEY_HEADER = "X-Client-Key";
+    private static final String ADMITTED_PROPERTY = AdmissionControlFilter.class.getName() + ".admitted";
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private static final RateLimiter customerLimiter = new RateLimiter(
+            Double.parseDouble(System.getProperty("bookstore.admission.ratePerSecond", "50")),
+            Integer.getInteger("bookstore.admission.burst", 100),
+            Integer.getInteger("bookstore.admission.maxKeys", 100000));
+    private static final ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(
+            Integer.getInteger("bookstore.admission.maxConcurrent", 64),
+            Integer.getInteger("bookstore.admission.reservedForCheckout", 16));
+    private static final LongAdder rateLimited = Metrics.counter("admission.shed.rateLimited");
+    private static final LongAdder overloaded = Metrics.counter("admission.shed.overloaded");
+    static {
+        Metrics.gauge("admission.inFlight", concurrencyLimiter::inFlight);
+        Metrics.gauge("admission.trackedClients", customerLimiter::size);
+    }
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        // Health checks must answer even when the server is saturated, or it looks dead
+        if (resourceInfo.getResourceClass() == HealthResource.class) {
+            return;
+        }
+
+        // A request shed for overload must not also use up the client's rate budget
+        boolean checkout = resourceInfo.getResourceClass() == OrderResource.class;
+        if (!concurrencyLimiter.tryAcquire(checkout)) {
+            overloaded.increment();
+            LOGGER.warning("Server busy, shedding request to " + requestContext.getUriInfo().getPath());
+            requestContext.abortWith(reject(Response.Status.SERVICE_UNAVAILABLE.getStatusCode(),
+                    TimeUnit.SECONDS.toNanos(1), "Server is busy, retry later"));
+            return;
+        }
+
+        String key = clientKey(requestContext);
+        if (key != null) {
+            long waitNanos = customerLimiter.tryAcquire(key, System.nanoTime());
+            if (waitNanos > 0) {
+                concurrencyLimiter.release();
+                rateLimited.increment();
+                LOGGER.warning("Rate limit exceeded for " + key);
+                requestContext.abortWith(reject(TOO_MANY_REQUESTS, waitNanos, "Rate limit exceeded, retry later"));
+                return;
+            }
+        }
+        requestContext.setProperty(ADMITTED_PROPERTY, Boolean.TRUE);
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        if (requestContext.getProperty(ADMITTED_PROPERTY) != null) {
+            requestContext.removeProperty(ADMITTED_PROPERTY);
+            concurrencyLimiter.release();
+        }
+    }
+
+    private static String clientKey(ContainerRequestContext requestContext) {
+        String customerId = requestContext.getUriInfo().getPathParameters().getFirst("customerId");
+        if (customerId != null) {
+            return "customer:" + customerId;
+        }
+        String clientKey = requestContext.getHeaderString(CLIENT_KEY_HEADER);
+        return clientKey != null && !clientKey.isBlank() ? "client:" + clientKey : null;
+    }
+
+    private static Response reject(int status, long waitNanos, String message) {
+        long retryAfterSeconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999L));
+        return Response
+                .status(status)
+                .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                .entity(new ErrorResponse(status, message))
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+}
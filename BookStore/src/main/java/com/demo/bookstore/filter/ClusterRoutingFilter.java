@@ -0,0 +1,144 @@
+package com.demo.bookstore.filter;
+
+import com.demo.bookstore.exception.ErrorResponse;
+import com.demo.bookstore.util.Cluster;
+
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.container.PreMatching;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Routes requests for a customer, their cart and their orders to the cluster node that
+ * holds the customer. Requests for customers of other nodes are forwarded and the owner's
+ * response is passed back unchanged. Customers moving between nodes are served by the node
+ * that still holds them, see {@link Cluster}.
+ */
+@PreMatching
+@Priority(Priorities.AUTHENTICATION - 100)
+public class ClusterRoutingFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final Logger LOGGER = Logger.getLogger(ClusterRoutingFilter.class.getName());
+    private static final String SERVED_CUSTOMER = ClusterRoutingFilter.class.getName() + ".customerId";
+    private static final Pattern CUSTOMER_PATH = Pattern.compile("/?customers/(\\d+)(/.*)?");
+    // Set per hop or computed by the HTTP client, so never passed on
+    private static final Set<String> HOP_HEADERS = Set.of(
+            "connection", "content-length", "expect", "host", "keep-alive", "transfer-encoding", "upgrade");
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        String path = requestContext.getUriInfo().getPath();
+        Matcher matcher = CUSTOMER_PATH.matcher(path);
+        if (!matcher.matches()) {
+            return;
+        }
+        int customerId;
+        try {
+            customerId = Integer.parseInt(matcher.group(1));
+        } catch (NumberFormatException e) {
+            return; // not a valid ID; let the resource reject it
+        }
+        if (Cluster.isJoining()) {
+            requestContext.abortWith(error(Response.Status.SERVICE_UNAVAILABLE, "This node is joining the cluster, retry later"));
+            return;
+        }
+        String forwardedBy = requestContext.getHeaderString(Cluster.FORWARDED_HEADER);
+        // A node serves the customers it holds until their handoff to a new owner is acknowledged
+        String target = null;
+        if (!Cluster.holds(customerId)) {
+            String owner = Cluster.ownerOf(customerId);
+            if (!Cluster.isSelf(owner)) {
+                if (forwardedBy == null) {
+                    target = owner;
+                } else if (!owner.equals(forwardedBy)) {
+                    // The sender's membership differs from ours; refuse rather than bounce it back
+                    LOGGER.warning("Refused forwarded request for customer " + customerId + " owned by " + owner);
+                    requestContext.abortWith(error(Response.Status.SERVICE_UNAVAILABLE, "Customer is moving between nodes, retry later"));
+                    return;
+                }
+                // Otherwise the owner asked this node as the previous owner, which does not have the customer either
+            } else {
+                // Owned here but not received yet; the previous owner may still hold the customer
+                String previous = Cluster.previousOwnerOf(customerId);
+                if (!Cluster.isSelf(previous) && !previous.equals(forwardedBy)) {
+                    target = previous;
+                }
+            }
+        }
+        if (target == null) {
+            if (!Cluster.enter(customerId)) {
+                requestContext.abortWith(error(Response.Status.SERVICE_UNAVAILABLE, "Customer is moving between nodes, retry later"));
+                return;
+            }
+            requestContext.setProperty(SERVED_CUSTOMER, customerId);
+            return;
+        }
+
+        String query = requestContext.getUriInfo().getRequestUri().getRawQuery();
+        String relative = (path.startsWith("/") ? path.substring(1) : path) + (query != null ? "?" + query : "");
+        Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        requestContext.getHeaders().forEach((name, values) -> {
+            if (!HOP_HEADERS.contains(name.toLowerCase()) && !name.equalsIgnoreCase(Cluster.FORWARDED_HEADER)) {
+                headers.put(name, values);
+            }
+        });
+        byte[] body = requestContext.hasEntity() ? requestContext.getEntityStream().readAllBytes() : new byte[0];
+
+        HttpResponse<byte[]> forwarded;
+        try {
+            forwarded = Cluster.forward(target, relative, requestContext.getMethod(), headers, body);
+        } catch (IOException e) {
+            LOGGER.warning("Forwarding " + requestContext.getMethod() + " " + path + " to " + target + " failed: " + e.getMessage());
+            requestContext.abortWith(error(Response.Status.SERVICE_UNAVAILABLE, "Node owning this customer is unavailable, retry later"));
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            requestContext.abortWith(error(Response.Status.SERVICE_UNAVAILABLE, "Request interrupted"));
+            return;
+        }
+
+        Response.ResponseBuilder response = Response.status(forwarded.statusCode());
+        forwarded.headers().map().forEach((name, values) -> {
+            if (!HOP_HEADERS.contains(name.toLowerCase()) && !name.startsWith(":")) {
+                values.forEach(value -> response.header(name, value));
+            }
+        });
+        if (forwarded.body().length > 0) {
+            response.entity(forwarded.body());
+        }
+        requestContext.abortWith(response.build());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        Object customerId = requestContext.getProperty(SERVED_CUSTOMER);
+        if (customerId != null) {
+            Cluster.exit((Integer) customerId);
+        }
+    }
+
+    private static Response error(Response.Status status, String message) {
+        return Response
+                .status(status)
+                .header(HttpHeaders.RETRY_AFTER, 1)
+                .entity(new ErrorResponse(status.getStatusCode(), message))
+                .type(MediaType.APPLICATION_JSON)
+                .build();
+    }
+}
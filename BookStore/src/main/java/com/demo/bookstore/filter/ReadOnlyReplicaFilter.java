@@ -0,0 +1,48 @@
+package com.demo.bookstore.filter;
+
+import com.demo.bookstore.exception.ErrorResponse;
+
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.Priorities;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.PreMatching;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Limits a read replica to the catalog reads it has replicated data for. Writes, and
+ * reads of customer, cart and order data, are refused with 403 and must go to the primary.
+ */
+@PreMatching
+@Priority(Priorities.AUTHORIZATION)
+public class ReadOnlyReplicaFilter implements ContainerRequestFilter {
+
+    private static final Logger LOGGER = Logger.getLogger(ReadOnlyReplicaFilter.class.getName());
+    private static final Set<String> READ_METHODS = Set.of(HttpMethod.GET, HttpMethod.HEAD, HttpMethod.OPTIONS);
+    private static final Set<String> REPLICATED_ROOTS = Set.of("books", "authors", "events", "metrics", "health");
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) {
+        String path = requestContext.getUriInfo().getPath();
+        String root = path.startsWith("/") ? path.substring(1) : path;
+        int slash = root.indexOf('/');
+        if (slash >= 0) {
+            root = root.substring(0, slash);
+        }
+        if (READ_METHODS.contains(requestContext.getMethod()) && REPLICATED_ROOTS.contains(root)) {
+            return;
+        }
+        LOGGER.warning("Refused " + requestContext.getMethod() + " " + path + " on read-only replica");
+        int status = Response.Status.FORBIDDEN.getStatusCode();
+        requestContext.abortWith(Response
+                .status(status)
+                .entity(new ErrorResponse(status, "This server is a read-only replica serving catalog reads; send this request to the primary"))
+                .type(MediaType.APPLICATION_JSON)
+                .build());
+    }
+}
@@ -0,0 +1,25 @@
+package com.demo.bookstore.model;
+
+import java.util.List;
+
+/**
+ * Request body for batch lookups by ID
+ */
+public class BatchRequest {
+    private List<Integer> ids;
+
+    public BatchRequest() {
+    }
+
+    public BatchRequest(List<Integer> ids) {
+        this.ids = ids;
+    }
+
+    public List<Integer> getIds() {
+        return ids;
+    }
+
+    public void setIds(List<Integer> ids) {
+        this.ids = ids;
+    }
+}
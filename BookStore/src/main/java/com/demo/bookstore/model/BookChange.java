@@ -0,0 +1,53 @@
+package com.demo.bookstore.model;
+
+/**
+ * Latest change to a book: its current state, or a tombstone if it was deleted
+ */
+public class BookChange {
+    private int bookId;
+    private long version;
+    private boolean deleted;
+    private Book book;
+
+    public BookChange() {
+    }
+
+    public BookChange(int bookId, long version, boolean deleted, Book book) {
+        this.bookId = bookId;
+        this.version = version;
+        this.deleted = deleted;
+        this.book = book;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(int bookId) {
+        this.bookId = bookId;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public void setBook(Book book) {
+        this.book = book;
+    }
+}
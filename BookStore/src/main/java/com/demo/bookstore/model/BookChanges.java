@@ -0,0 +1,50 @@
+package com.demo.bookstore.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Books changed since a version, with the version to ask from next time
+ */
+public class BookChanges {
+    private long version;
+    private boolean resync;
+    private boolean hasMore;
+    private List<BookChange> changes;
+
+    public BookChanges() {
+        this.changes = new ArrayList<>();
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public boolean isResync() {
+        return resync;
+    }
+
+    public void setResync(boolean resync) {
+        this.resync = resync;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    public List<BookChange> getChanges() {
+        return changes;
+    }
+
+    public void setChanges(List<BookChange> changes) {
+        this.changes = changes;
+    }
+}
@@ -0,0 +1,30 @@
+package com.demo.bookstore.model;
+
+import java.util.Map;
+
+/**
+ * Number of books matching a filter, and their counts per value of each facet
+ */
+public class BookFacets {
+    private int total;
+    private Map<String, Map<String, Integer>> facets;
+
+    public BookFacets() {
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public Map<String, Map<String, Integer>> getFacets() {
+        return facets;
+    }
+
+    public void setFacets(Map<String, Map<String, Integer>> facets) {
+        this.facets = facets;
+    }
+}
@@ -0,0 +1,83 @@
+package com.demo.bookstore.model;
+
+/**
+ * Change to a catalog entity, published on the event feed
+ */
+public class ChangeEvent {
+    private long id;
+    private String type;
+    private String entity;
+    private int entityId;
+    private Double price;
+    private Integer stock;
+    private long timestamp;
+
+    public ChangeEvent() {
+    }
+
+    public ChangeEvent(long id, String type, String entity, int entityId, Double price, Integer stock, long timestamp) {
+        this.id = id;
+        this.type = type;
+        this.entity = entity;
+        this.entityId = entityId;
+        this.price = price;
+        this.stock = stock;
+        this.timestamp = timestamp;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public void setEntity(String entity) {
+        this.entity = entity;
+    }
+
+    public int getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(int entityId) {
+        this.entityId = entityId;
+    }
+
+    public Double getPrice() {
+        return price;
+    }
+
+    public void setPrice(Double price) {
+        this.price = price;
+    }
+
+    public Integer getStock() {
+        return stock;
+    }
+
+    public void setStock(Integer stock) {
+        this.stock = stock;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+}
@@ -0,0 +1,19 @@
+package com.demo.bookstore.model;
+
+/**
+ * Node joining the cluster
+ */
+public class ClusterMember {
+    private String url;
+
+    public ClusterMember() {
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+}
@@ -0,0 +1,41 @@
+package com.demo.bookstore.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Membership of the cluster as seen by one node
+ */
+public class ClusterView {
+    private String self;
+    private long version;
+    private List<String> members;
+
+    public ClusterView() {
+        this.members = new ArrayList<>();
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    public void setSelf(String self) {
+        this.self = self;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public List<String> getMembers() {
+        return members;
+    }
+
+    public void setMembers(List<String> members) {
+        this.members = members;
+    }
+}
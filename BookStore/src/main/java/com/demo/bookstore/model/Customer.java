@@ -1,8 +1,12 @@
 package com.demo.bookstore.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
 /**
  * Entity class representing a Customer in the BookStore
  */
+// fullName is derived, so accept it back from clients but never set it
+@JsonIgnoreProperties(value = "fullName", allowGetters = true)
 public class Customer {
     private int id;
     private String firstName;
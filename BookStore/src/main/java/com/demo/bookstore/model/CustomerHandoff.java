@@ -0,0 +1,42 @@
+package com.demo.bookstore.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A customer's state moved from one cluster node to another when ownership changes
+ */
+public class CustomerHandoff {
+    private Customer customer;
+    private List<CartItem> cart;
+    private List<byte[]> orders; // orders in their packed form, so unit prices are kept
+
+    public CustomerHandoff() {
+        this.cart = new ArrayList<>();
+        this.orders = new ArrayList<>();
+    }
+
+    public Customer getCustomer() {
+        return customer;
+    }
+
+    public void setCustomer(Customer customer) {
+        this.customer = customer;
+    }
+
+    public List<CartItem> getCart() {
+        return cart;
+    }
+
+    public void setCart(List<CartItem> cart) {
+        this.cart = cart;
+    }
+
+    public List<byte[]> getOrders() {
+        return orders;
+    }
+
+    public void setOrders(List<byte[]> orders) {
+        this.orders = orders;
+    }
+}
@@ -0,0 +1,42 @@
+package com.demo.bookstore.model;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response with the requested data plus the related entities it references, each included once
+ */
+public class Expanded {
+    private Object data;
+    private Map<String, List<Object>> included;
+    private boolean truncated;
+
+    public Expanded() {
+        this.included = new LinkedHashMap<>();
+    }
+
+    public Object getData() {
+        return data;
+    }
+
+    public void setData(Object data) {
+        this.data = data;
+    }
+
+    public Map<String, List<Object>> getIncluded() {
+        return included;
+    }
+
+    public void setIncluded(Map<String, List<Object>> included) {
+        this.included = included;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+}
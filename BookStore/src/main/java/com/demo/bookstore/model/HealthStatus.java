@@ -0,0 +1,33 @@
+package com.demo.bookstore.model;
+
+/**
+ * Liveness or readiness of the server, with the reason when it is not ready
+ */
+public class HealthStatus {
+    private String status;
+    private String reason;
+
+    public HealthStatus() {
+    }
+
+    public HealthStatus(String status, String reason) {
+        this.status = status;
+        this.reason = reason;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+}
@@ -0,0 +1,33 @@
+package com.demo.bookstore.model;
+
+/**
+ * A frequently requested book or customer, with its estimated recent requests
+ */
+public class HotKey {
+    private int id;
+    private long requests;
+
+    public HotKey() {
+    }
+
+    public HotKey(int id, long requests) {
+        this.id = id;
+        this.requests = requests;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public long getRequests() {
+        return requests;
+    }
+
+    public void setRequests(long requests) {
+        this.requests = requests;
+    }
+}
@@ -0,0 +1,45 @@
+package com.demo.bookstore.model;
+
+/**
+ * Result of looking up one ID in a batch: the entity, or a not-found marker
+ *
+ * @param <T> Type of the entity
+ */
+public class LookupResult<T> {
+    private int id;
+    private boolean found;
+    private T entity;
+
+    public LookupResult() {
+    }
+
+    public LookupResult(int id, T entity) {
+        this.id = id;
+        this.found = entity != null;
+        this.entity = entity;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public boolean isFound() {
+        return found;
+    }
+
+    public void setFound(boolean found) {
+        this.found = found;
+    }
+
+    public T getEntity() {
+        return entity;
+    }
+
+    public void setEntity(T entity) {
+        this.entity = entity;
+    }
+}
@@ -11,6 +11,7 @@ public class Order {
     private int customerId;
     private List<CartItem> items;
     private double totalPrice;
+    private long createdAt;
 
     public Order() {
         this.items = new ArrayList<>();
@@ -23,6 +24,11 @@ public class Order {
         this.totalPrice = totalPrice;
     }
 
+    public Order(int id, int customerId, List<CartItem> items, double totalPrice, long createdAt) {
+        this(id, customerId, items, totalPrice);
+        this.createdAt = createdAt;
+    }
+
     public int getId() {
         return id;
     }
@@ -54,4 +60,12 @@ public class Order {
     public void setTotalPrice(double totalPrice) {
         this.totalPrice = totalPrice;
     }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
 } 
\ No newline at end of file
@@ -0,0 +1,59 @@
+package com.demo.bookstore.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Customer cart with priced lines, subtotal and stock availability
+ */
+public class PricedCart {
+    private int customerId;
+    private List<PricedCartLine> lines;
+    private int itemCount;
+    private double subtotal;
+    private boolean allInStock;
+
+    public PricedCart() {
+        this.lines = new ArrayList<>();
+    }
+
+    public int getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(int customerId) {
+        this.customerId = customerId;
+    }
+
+    public List<PricedCartLine> getLines() {
+        return lines;
+    }
+
+    public void setLines(List<PricedCartLine> lines) {
+        this.lines = lines;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public void setItemCount(int itemCount) {
+        this.itemCount = itemCount;
+    }
+
+    public double getSubtotal() {
+        return subtotal;
+    }
+
+    public void setSubtotal(double subtotal) {
+        this.subtotal = subtotal;
+    }
+
+    public boolean isAllInStock() {
+        return allInStock;
+    }
+
+    public void setAllInStock(boolean allInStock) {
+        this.allInStock = allInStock;
+    }
+}
@@ -0,0 +1,93 @@
+package com.demo.bookstore.model;
+
+/**
+ * Cart line with its current price and stock availability
+ */
+public class PricedCartLine {
+    private int bookId;
+    private String title;
+    private int quantity;
+    private double unitPrice;
+    private double lineTotal;
+    private int stock;
+    private boolean available;
+    private boolean inStock;
+
+    public PricedCartLine() {
+    }
+
+    public PricedCartLine(int bookId, String title, int quantity, double unitPrice, double lineTotal, int stock, boolean available, boolean inStock) {
+        this.bookId = bookId;
+        this.title = title;
+        this.quantity = quantity;
+        this.unitPrice = unitPrice;
+        this.lineTotal = lineTotal;
+        this.stock = stock;
+        this.available = available;
+        this.inStock = inStock;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(int bookId) {
+        this.bookId = bookId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public double getUnitPrice() {
+        return unitPrice;
+    }
+
+    public void setUnitPrice(double unitPrice) {
+        this.unitPrice = unitPrice;
+    }
+
+    public double getLineTotal() {
+        return lineTotal;
+    }
+
+    public void setLineTotal(double lineTotal) {
+        this.lineTotal = lineTotal;
+    }
+
+    public int getStock() {
+        return stock;
+    }
+
+    public void setStock(int stock) {
+        this.stock = stock;
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    public boolean isInStock() {
+        return inStock;
+    }
+
+    public void setInStock(boolean inStock) {
+        this.inStock = inStock;
+    }
+}
@@ -0,0 +1,33 @@
+package com.demo.bookstore.model;
+
+/**
+ * A book bought together with another, and in how many orders
+ */
+public class RelatedBook {
+    private Book book;
+    private long boughtTogether;
+
+    public RelatedBook() {
+    }
+
+    public RelatedBook(Book book, long boughtTogether) {
+        this.book = book;
+        this.boughtTogether = boughtTogether;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public void setBook(Book book) {
+        this.book = book;
+    }
+
+    public long getBoughtTogether() {
+        return boughtTogether;
+    }
+
+    public void setBoughtTogether(long boughtTogether) {
+        this.boughtTogether = boughtTogether;
+    }
+}
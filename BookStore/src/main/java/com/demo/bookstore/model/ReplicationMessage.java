@@ -0,0 +1,102 @@
+package com.demo.bookstore.model;
+
+import java.util.List;
+
+/**
+ * Message of the replication stream from a primary to a read-only replica
+ */
+public class ReplicationMessage {
+    private String type; // hello, snapshot, change or heartbeat
+    private long epoch; // identifies the primary's log, which restarts when the primary does
+    private long sequence; // primary's log position this message brings the replica to; in hello, the last one applied
+    private long timestamp; // when the primary sent the message
+    private String entity; // changes: book or author
+    private int entityId;
+    private Book book; // changes: new state, or null if deleted
+    private Author author;
+    private List<Book> books; // snapshots: the whole catalog
+    private List<Author> authors;
+
+    public ReplicationMessage() {
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(long epoch) {
+        this.epoch = epoch;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public String getEntity() {
+        return entity;
+    }
+
+    public void setEntity(String entity) {
+        this.entity = entity;
+    }
+
+    public int getEntityId() {
+        return entityId;
+    }
+
+    public void setEntityId(int entityId) {
+        this.entityId = entityId;
+    }
+
+    public Book getBook() {
+        return book;
+    }
+
+    public void setBook(Book book) {
+        this.book = book;
+    }
+
+    public Author getAuthor() {
+        return author;
+    }
+
+    public void setAuthor(Author author) {
+        this.author = author;
+    }
+
+    public List<Book> getBooks() {
+        return books;
+    }
+
+    public void setBooks(List<Book> books) {
+        this.books = books;
+    }
+
+    public List<Author> getAuthors() {
+        return authors;
+    }
+
+    public void setAuthors(List<Author> authors) {
+        this.authors = authors;
+    }
+}
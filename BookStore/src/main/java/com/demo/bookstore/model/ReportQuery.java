@@ -0,0 +1,123 @@
+package com.demo.bookstore.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ad-hoc report over orders joined to the catalog: optional filters, up to two group-by
+ * dimensions (author, book, customer, decade, year) and a time budget
+ */
+public class ReportQuery {
+    private List<String> groupBy;
+    private Integer authorId;
+    private Integer bookId;
+    private Integer customerId;
+    private Integer fromOrderId;
+    private Integer toOrderId;
+    private Integer fromYear;
+    private Integer toYear;
+    private Long fromTime;
+    private Long toTime;
+    private Integer limit;
+    private Long timeoutMillis;
+
+    public ReportQuery() {
+        this.groupBy = new ArrayList<>();
+    }
+
+    public List<String> getGroupBy() {
+        return groupBy;
+    }
+
+    public void setGroupBy(List<String> groupBy) {
+        this.groupBy = groupBy;
+    }
+
+    public Integer getAuthorId() {
+        return authorId;
+    }
+
+    public void setAuthorId(Integer authorId) {
+        this.authorId = authorId;
+    }
+
+    public Integer getBookId() {
+        return bookId;
+    }
+
+    public void setBookId(Integer bookId) {
+        this.bookId = bookId;
+    }
+
+    public Integer getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(Integer customerId) {
+        this.customerId = customerId;
+    }
+
+    public Integer getFromOrderId() {
+        return fromOrderId;
+    }
+
+    public void setFromOrderId(Integer fromOrderId) {
+        this.fromOrderId = fromOrderId;
+    }
+
+    public Integer getToOrderId() {
+        return toOrderId;
+    }
+
+    public void setToOrderId(Integer toOrderId) {
+        this.toOrderId = toOrderId;
+    }
+
+    public Integer getFromYear() {
+        return fromYear;
+    }
+
+    public void setFromYear(Integer fromYear) {
+        this.fromYear = fromYear;
+    }
+
+    public Integer getToYear() {
+        return toYear;
+    }
+
+    public void setToYear(Integer toYear) {
+        this.toYear = toYear;
+    }
+
+    public Long getFromTime() {
+        return fromTime;
+    }
+
+    public void setFromTime(Long fromTime) {
+        this.fromTime = fromTime;
+    }
+
+    public Long getToTime() {
+        return toTime;
+    }
+
+    public void setToTime(Long toTime) {
+        this.toTime = toTime;
+    }
+
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+
+    public Long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(Long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+}
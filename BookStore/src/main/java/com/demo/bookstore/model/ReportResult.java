@@ -0,0 +1,65 @@
+package com.demo.bookstore.model;
+
+import java.util.List;
+
+/**
+ * Rows of a completed report together with its scan statistics
+ */
+public class ReportResult {
+    private List<ReportRow> rows;
+    private long scannedOrders;
+    private long scannedLines;
+    private long elapsedMillis;
+    private long ordersPerSecond;
+
+    public ReportResult() {
+    }
+
+    public ReportResult(List<ReportRow> rows, long scannedOrders, long scannedLines, long elapsedMillis, long ordersPerSecond) {
+        this.rows = rows;
+        this.scannedOrders = scannedOrders;
+        this.scannedLines = scannedLines;
+        this.elapsedMillis = elapsedMillis;
+        this.ordersPerSecond = ordersPerSecond;
+    }
+
+    public List<ReportRow> getRows() {
+        return rows;
+    }
+
+    public void setRows(List<ReportRow> rows) {
+        this.rows = rows;
+    }
+
+    public long getScannedOrders() {
+        return scannedOrders;
+    }
+
+    public void setScannedOrders(long scannedOrders) {
+        this.scannedOrders = scannedOrders;
+    }
+
+    public long getScannedLines() {
+        return scannedLines;
+    }
+
+    public void setScannedLines(long scannedLines) {
+        this.scannedLines = scannedLines;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public long getOrdersPerSecond() {
+        return ordersPerSecond;
+    }
+
+    public void setOrdersPerSecond(long ordersPerSecond) {
+        this.ordersPerSecond = ordersPerSecond;
+    }
+}
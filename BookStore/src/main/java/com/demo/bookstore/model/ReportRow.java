@@ -0,0 +1,55 @@
+package com.demo.bookstore.model;
+
+import java.util.Map;
+
+/**
+ * One group of a report with its aggregated figures
+ */
+public class ReportRow {
+    private Map<String, Integer> group;
+    private long orders;
+    private long units;
+    private double revenue;
+
+    public ReportRow() {
+    }
+
+    public ReportRow(Map<String, Integer> group, long orders, long units, double revenue) {
+        this.group = group;
+        this.orders = orders;
+        this.units = units;
+        this.revenue = revenue;
+    }
+
+    public Map<String, Integer> getGroup() {
+        return group;
+    }
+
+    public void setGroup(Map<String, Integer> group) {
+        this.group = group;
+    }
+
+    public long getOrders() {
+        return orders;
+    }
+
+    public void setOrders(long orders) {
+        this.orders = orders;
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    public void setUnits(long units) {
+        this.units = units;
+    }
+
+    public double getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(double revenue) {
+        this.revenue = revenue;
+    }
+}
@@ -0,0 +1,43 @@
+package com.demo.bookstore.model;
+
+/**
+ * Aggregated sales of one book or author over an analytics window
+ */
+public class SalesFigure {
+    private int id;
+    private long units;
+    private double revenue;
+
+    public SalesFigure() {
+    }
+
+    public SalesFigure(int id, long units, double revenue) {
+        this.id = id;
+        this.units = units;
+        this.revenue = revenue;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    public void setUnits(long units) {
+        this.units = units;
+    }
+
+    public double getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(double revenue) {
+        this.revenue = revenue;
+    }
+}
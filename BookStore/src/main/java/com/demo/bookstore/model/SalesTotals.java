@@ -0,0 +1,53 @@
+package com.demo.bookstore.model;
+
+/**
+ * Units sold and revenue over a time span
+ */
+public class SalesTotals {
+    private String window;
+    private long start;
+    private long units;
+    private double revenue;
+
+    public SalesTotals() {
+    }
+
+    public SalesTotals(String window, long start, long units, double revenue) {
+        this.window = window;
+        this.start = start;
+        this.units = units;
+        this.revenue = revenue;
+    }
+
+    public String getWindow() {
+        return window;
+    }
+
+    public void setWindow(String window) {
+        this.window = window;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public void setStart(long start) {
+        this.start = start;
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    public void setUnits(long units) {
+        this.units = units;
+    }
+
+    public double getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(double revenue) {
+        this.revenue = revenue;
+    }
+}
@@ -0,0 +1,64 @@
+package com.demo.bookstore.provider;
+
+import com.demo.bookstore.exception.InvalidInputException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyReader;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Provider;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Reads and writes entities as Smile or CBOR, with the same Jackson mapping as JSON
+ */
+@Provider
+@Consumes({BinaryFormats.APPLICATION_SMILE, BinaryFormats.APPLICATION_CBOR})
+@Produces({BinaryFormats.APPLICATION_SMILE, BinaryFormats.APPLICATION_CBOR})
+public class BinaryFormatProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return BinaryFormats.mapper(mediaType) != null;
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+            MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+        PushbackInputStream input = new PushbackInputStream(entityStream);
+        int first = input.read();
+        if (first < 0) {
+            return null; // no body, as with JSON
+        }
+        input.unread(first);
+
+        ObjectMapper mapper = BinaryFormats.mapper(mediaType);
+        try {
+            return mapper.readValue(input, mapper.constructType(genericType));
+        } catch (JsonProcessingException e) {
+            throw new InvalidInputException("Request body is not valid " + mediaType.getSubtype() + ": " + e.getOriginalMessage());
+        }
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return BinaryFormats.mapper(mediaType) != null;
+    }
+
+    @Override
+    public void writeTo(Object value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+            MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        ObjectMapper mapper = BinaryFormats.mapper(mediaType);
+        mapper.writerFor(mapper.constructType(genericType)).writeValue(entityStream, value);
+    }
+}
@@ -0,0 +1,59 @@
+package com.demo.bookstore.provider;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import jakarta.ws.rs.core.MediaType;
+
+/**
+ * Media types and Jackson codecs of the binary encodings offered next to JSON. Both are
+ * encodings of the same data model as JSON, so the same Jackson-mapped models are used.
+ */
+public final class BinaryFormats {
+
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+    public static final String APPLICATION_CBOR = "application/cbor";
+    public static final MediaType APPLICATION_SMILE_TYPE = MediaType.valueOf(APPLICATION_SMILE);
+    public static final MediaType APPLICATION_CBOR_TYPE = MediaType.valueOf(APPLICATION_CBOR);
+
+    private static final JsonFactory JSON = configure(new JsonFactory());
+    private static final ObjectMapper SMILE = new ObjectMapper(configure(new SmileFactory()));
+    private static final ObjectMapper CBOR = new ObjectMapper(configure(new CBORFactory()));
+
+    private BinaryFormats() {
+    }
+
+    /**
+     * @param mediaType Negotiated media type
+     * @return Mapper for a binary media type, or null if it is not one
+     */
+    public static ObjectMapper mapper(MediaType mediaType) {
+        if (mediaType.isCompatible(APPLICATION_SMILE_TYPE)) {
+            return SMILE;
+        }
+        if (mediaType.isCompatible(APPLICATION_CBOR_TYPE)) {
+            return CBOR;
+        }
+        return null;
+    }
+
+    /**
+     * @param mediaType Negotiated media type
+     * @return Streaming factory for the media type, JSON unless it is a binary one
+     */
+    public static JsonFactory factory(MediaType mediaType) {
+        ObjectMapper mapper = mapper(mediaType);
+        return mapper == null ? JSON : mapper.getFactory();
+    }
+
+    private static <F extends JsonFactory> F configure(F factory) {
+        // The container owns the entity streams
+        factory.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        factory.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        return factory;
+    }
+}
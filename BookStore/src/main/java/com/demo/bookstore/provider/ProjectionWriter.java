@@ -0,0 +1,36 @@
+package com.demo.bookstore.provider;
+
+import com.demo.bookstore.util.Projection;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.MultivaluedMap;
+import jakarta.ws.rs.ext.MessageBodyWriter;
+import jakarta.ws.rs.ext.Provider;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Writes {@code ?fields=} projections in whichever format was negotiated
+ */
+@Provider
+@Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_SMILE, BinaryFormats.APPLICATION_CBOR})
+public class ProjectionWriter implements MessageBodyWriter<Projection.Output> {
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return Projection.Output.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public void writeTo(Projection.Output output, Class<?> type, Type genericType, Annotation[] annotations,
+            MediaType mediaType, MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        try (JsonGenerator generator = BinaryFormats.factory(mediaType).createGenerator(entityStream)) {
+            output.write(generator);
+        }
+    }
+}
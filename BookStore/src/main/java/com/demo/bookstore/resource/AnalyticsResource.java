@@ -0,0 +1,134 @@
+package com.demo.bookstore.resource;
+
+import com.demo.bookstore.exception.InvalidInputException;
+import com.demo.bookstore.model.HotKey;
+import com.demo.bookstore.model.SalesFigure;
+import com.demo.bookstore.model.SalesTotals;
+import com.demo.bookstore.util.HotKeys;
+import com.demo.bookstore.util.SalesAnalytics;
+
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Resource class for sales and request analytics, served from the running aggregates
+ */
+@Path("/analytics")
+@Produces(MediaType.APPLICATION_JSON)
+public class AnalyticsResource {
+
+    private static final Logger LOGGER = Logger.getLogger(AnalyticsResource.class.getName());
+
+    /**
+     * Get the best-selling books by units
+     * @param window Time window: 1m, 1h, 24h or all
+     * @param k Number of books to return
+     * @return Books ranked by units sold
+     */
+    @GET
+    @Path("/top-books")
+    public List<SalesFigure> getTopBooks(
+            @QueryParam("window") @DefaultValue("24h") String window,
+            @QueryParam("k") @DefaultValue("10") int k) {
+        LOGGER.info("Retrieving top " + k + " books for window " + window);
+        return SalesAnalytics.topBooks(parseWindow(window), validateK(k, SalesAnalytics.MAX_K));
+    }
+
+    /**
+     * Get authors ranked by revenue
+     * @param window Time window: 1m, 1h, 24h or all
+     * @param k Number of authors to return
+     * @return Authors ranked by revenue
+     */
+    @GET
+    @Path("/revenue-by-author")
+    public List<SalesFigure> getRevenueByAuthor(
+            @QueryParam("window") @DefaultValue("24h") String window,
+            @QueryParam("k") @DefaultValue("10") int k) {
+        LOGGER.info("Retrieving revenue of top " + k + " authors for window " + window);
+        return SalesAnalytics.topAuthors(parseWindow(window), validateK(k, SalesAnalytics.MAX_K));
+    }
+
+    /**
+     * Get total units and revenue within a window
+     * @param window Time window: 1m, 1h, 24h or all
+     * @return Window totals
+     */
+    @GET
+    @Path("/units")
+    public SalesTotals getUnits(@QueryParam("window") @DefaultValue("24h") String window) {
+        LOGGER.info("Retrieving sales totals for window " + window);
+        return SalesAnalytics.totals(parseWindow(window));
+    }
+
+    /**
+     * Get units and revenue of one book within a window
+     * @param bookId ID of the book
+     * @param window Time window: 1m, 1h, 24h or all
+     * @return Sales figure of the book
+     */
+    @GET
+    @Path("/units/books/{bookId}")
+    public SalesFigure getBookUnits(
+            @PathParam("bookId") int bookId,
+            @QueryParam("window") @DefaultValue("24h") String window) {
+        LOGGER.info("Retrieving sales of book ID " + bookId + " for window " + window);
+        return SalesAnalytics.bookSales(parseWindow(window), bookId);
+    }
+
+    /**
+     * Get units sold per hour over the last 24 hours
+     * @return Hourly totals, oldest first
+     */
+    @GET
+    @Path("/units-per-hour")
+    public List<SalesTotals> getUnitsPerHour() {
+        LOGGER.info("Retrieving hourly sales totals");
+        return SalesAnalytics.hourlyTotals();
+    }
+
+    /**
+     * Get the most requested books or customers, by recent requests
+     * @param type Entity type: book or customer
+     * @param k Number of keys to return
+     * @return Keys ranked by estimated recent requests
+     */
+    @GET
+    @Path("/hot-keys")
+    public List<HotKey> getHotKeys(
+            @QueryParam("type") @DefaultValue("book") String type,
+            @QueryParam("k") @DefaultValue("10") int k) {
+        LOGGER.info("Retrieving top " + k + " hot keys of type " + type);
+        HotKeys.Type keyType = HotKeys.Type.fromLabel(type);
+        if (keyType == null) {
+            LOGGER.warning("Invalid analytics request: unknown key type " + type);
+            throw new InvalidInputException("Type must be one of book or customer");
+        }
+        return HotKeys.top(keyType, validateK(k, HotKeys.MAX_K));
+    }
+
+    private static SalesAnalytics.Window parseWindow(String label) {
+        SalesAnalytics.Window window = SalesAnalytics.Window.fromLabel(label);
+        if (window == null) {
+            LOGGER.warning("Invalid analytics request: unknown window " + label);
+            throw new InvalidInputException("Window must be one of 1m, 1h, 24h or all");
+        }
+        return window;
+    }
+
+    private static int validateK(int k, int max) {
+        if (k <= 0 || k > max) {
+            LOGGER.warning("Invalid analytics request: k=" + k);
+            throw new InvalidInputException("k must be between 1 and " + max);
+        }
+        return k;
+    }
+}
@@ -3,8 +3,15 @@ package com.demo.bookstore.resource;
 import com.demo.bookstore.exception.AuthorNotFoundException;
 import com.demo.bookstore.exception.InvalidInputException;
 import com.demo.bookstore.model.Author;
+import com.demo.bookstore.model.BatchRequest;
 import com.demo.bookstore.model.Book;
+import com.demo.bookstore.model.Expanded;
+import com.demo.bookstore.model.LookupResult;
+import com.demo.bookstore.provider.BinaryFormats;
+import com.demo.bookstore.util.BatchIds;
 import com.demo.bookstore.util.DataStore;
+import com.demo.bookstore.util.Expansion;
+import com.demo.bookstore.util.Projections;
 
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
@@ -14,22 +21,26 @@ import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Logger;
 
 /**
  * Resource class for Author entity
  */
 @Path("/authors")
-@Produces(MediaType.APPLICATION_JSON)
-@Consumes(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_SMILE, BinaryFormats.APPLICATION_CBOR})
+@Consumes({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_SMILE, BinaryFormats.APPLICATION_CBOR})
 public class AuthorResource {
 
     private static final Logger LOGGER = Logger.getLogger(AuthorResource.class.getName());
+    private static final Set<String> EXPANSIONS = Set.of("books");
 
     /**
      * Create a new author
@@ -53,23 +64,46 @@ public class AuthorResource {
     }
     
     /**
-     * Get all authors
-     * @return List of all authors
+     * Get all authors, or only those with the given IDs
+     * @param ids Optional comma-separated IDs to look up
+     * @param fields Optional comma-separated fields to include
+     * @param expand Optional related entities to include (books)
+     * @return List of all authors, or one lookup result per requested ID
      */
     @GET
-    public List<Author> getAllAuthors() {
+    public Response getAllAuthors(
+            @QueryParam("ids") String ids,
+            @QueryParam("fields") String fields,
+            @QueryParam("expand") String expand) {
+        if (ids != null) {
+            if (expand != null) {
+                LOGGER.warning("Invalid author lookup request: expand is not supported with ids");
+                throw new InvalidInputException("Cannot combine expand with ids");
+            }
+            return lookup(BatchIds.parse(ids), fields);
+        }
+        
         LOGGER.info("Retrieving all authors");
-        return DataStore.getAllAuthors();
+        List<Author> authors = DataStore.getAllAuthors();
+        if (expand != null) {
+            return Response.ok(expand(authors, authors, expand, fields)).build();
+        }
+        return Response.ok(fields == null ? authors : Projections.AUTHOR.select(fields).ofAll(authors)).build();
     }
     
     /**
      * Get an author by ID
      * @param id ID of the author to retrieve
+     * @param fields Optional comma-separated fields to include
+     * @param expand Optional related entities to include (books)
      * @return Author with the specified ID
      */
     @GET
     @Path("/{id}")
-    public Author getAuthorById(@PathParam("id") int id) {
+    public Response getAuthorById(
+            @PathParam("id") int id,
+            @QueryParam("fields") String fields,
+            @QueryParam("expand") String expand) {
         LOGGER.info("Retrieving author with ID: " + id);
         
         Author author = DataStore.getAuthorById(id);
@@ -77,7 +111,10 @@ public class AuthorResource {
             LOGGER.warning("Author with ID " + id + " not found");
             throw new AuthorNotFoundException(id);
         }
-        return author;
+        if (expand != null) {
+            return Response.ok(expand(author, List.of(author), expand, fields)).build();
+        }
+        return Response.ok(fields == null ? author : Projections.AUTHOR.select(fields).of(author)).build();
     }
     
     /**
@@ -135,11 +172,12 @@ public class AuthorResource {
     /**
      * Get all books by an author
      * @param id ID of the author
+     * @param fields Optional comma-separated fields to include
      * @return List of books by the author
      */
     @GET
     @Path("/{id}/books")
-    public List<Book> getAuthorBooks(@PathParam("id") int id) {
+    public Response getAuthorBooks(@PathParam("id") int id, @QueryParam("fields") String fields) {
         LOGGER.info("Retrieving books for author with ID: " + id);
         
         Author author = DataStore.getAuthorById(id);
@@ -150,6 +188,45 @@ public class AuthorResource {
         
         List<Book> books = DataStore.getBooksByAuthor(id);
         LOGGER.info("Retrieved " + books.size() + " books for author ID=" + id);
-        return books;
+        return Response.ok(fields == null ? books : Projections.BOOK.select(fields).ofAll(books)).build();
+    }
+    
+    /**
+     * Look up authors by ID
+     * @param request IDs to look up
+     * @param fields Optional comma-separated fields to include
+     * @return One lookup result per requested ID, in request order
+     */
+    @POST
+    @Path("/batch")
+    public Response getBatch(BatchRequest request, @QueryParam("fields") String fields) {
+        return lookup(BatchIds.of(request), fields);
+    }
+    
+    private Response lookup(int[] ids, String fields) {
+        LOGGER.info("Looking up " + ids.length + " authors by ID");
+        List<LookupResult<Author>> results = DataStore.getAuthorsByIds(ids);
+        return Response.ok(fields == null ? results : Projections.AUTHOR.select(fields).ofLookups(results)).build();
+    }
+    
+    private static Expanded expand(Object data, List<Author> authors, String expand, String fields) {
+        if (fields != null) {
+            LOGGER.warning("Invalid author request: fields cannot be combined with expand");
+            throw new InvalidInputException("Cannot combine fields with expand");
+        }
+        Expansion expansion = Expansion.parse(expand, EXPANSIONS);
+        // One pass over the catalog for all authors, rather than one per author
+        Set<Integer> authorIds = new HashSet<>();
+        for (Author author : authors) {
+            authorIds.add(author.getId());
+        }
+        for (Book book : DataStore.getAllBooks()) {
+            if (authorIds.contains(book.getAuthorId())) {
+                expansion.include(book);
+            }
+        }
+        Expanded expanded = expansion.wrap(data);
+        LOGGER.info("Expanded " + authors.size() + " authors with " + expand);
+        return expanded;
     }
-} 
\ No newline at end of file
+}
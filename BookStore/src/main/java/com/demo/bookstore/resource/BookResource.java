@@ -4,33 +4,61 @@ import com.demo.bookstore.exception.AuthorNotFoundException;
 import com.demo.bookstore.exception.BookNotFoundException;
 import com.demo.bookstore.exception.InvalidInputException;
 import com.demo.bookstore.model.Author;
+import com.demo.bookstore.model.BatchRequest;
 import com.demo.bookstore.model.Book;
+import com.demo.bookstore.model.BookChanges;
+import com.demo.bookstore.model.BookFacets;
+import com.demo.bookstore.model.Expanded;
+import com.demo.bookstore.model.LookupResult;
+import com.demo.bookstore.model.RelatedBook;
+import com.demo.bookstore.provider.BinaryFormats;
+import com.demo.bookstore.util.BatchIds;
+import com.demo.bookstore.util.CoPurchases;
 import com.demo.bookstore.util.DataStore;
+import com.demo.bookstore.util.Expansion;
+import com.demo.bookstore.util.FacetIndex;
+import com.demo.bookstore.util.HotKeys;
+import com.demo.bookstore.util.Projections;
+import com.demo.bookstore.util.SortedIndex;
 
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 /**
  * Resource class for Book entity
  */
 @Path("/books")
-@Produces(MediaType.APPLICATION_JSON)
-@Consumes(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_SMILE, BinaryFormats.APPLICATION_CBOR})
+@Consumes({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_SMILE, BinaryFormats.APPLICATION_CBOR})
 public class BookResource {
 
     private static final Logger LOGGER = Logger.getLogger(BookResource.class.getName());
+    private static final int DEFAULT_CHANGES_LIMIT = 1000;
+    private static final int MAX_CHANGES_LIMIT = 10000;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final Set<String> EXPANSIONS = Set.of("author");
+    // Carts and orders keep unit prices as int cents
+    private static final long MAX_PRICE = Integer.MAX_VALUE / 100;
 
     /**
      * Create a new book
@@ -70,6 +98,11 @@ public class BookResource {
             throw new InvalidInputException("Book price cannot be negative");
         }
         
+        if (!(book.getPrice() <= MAX_PRICE)) {
+            LOGGER.warning("Invalid book creation request: price too high: " + book.getPrice());
+            throw new InvalidInputException("Book price cannot be more than " + MAX_PRICE);
+        }
+        
         if (book.getStock() < 0) {
             LOGGER.warning("Invalid book creation request: negative stock: " + book.getStock());
             throw new InvalidInputException("Book stock cannot be negative");
@@ -81,23 +114,135 @@ public class BookResource {
     }
     
     /**
-     * Get all books
-     * @return List of all books
+     * Get all books, only those with the given IDs, or a page of the books within a price
+     * and publication year range
+     * @param ids Optional comma-separated IDs to look up
+     * @param fields Optional comma-separated fields to include
+     * @param expand Optional related entities to include (author)
+     * @param minPrice Only books costing at least this much
+     * @param maxPrice Only books costing at most this much
+     * @param fromYear Only books published in or after this year
+     * @param toYear Only books published in or before this year
+     * @param sort Order of the page: price or publicationYear, prefixed with - for descending
+     * @param cursor Cursor from the X-Next-Cursor header of the previous page
+     * @param limit Maximum number of books to return
+     * @return List of all books, one lookup result per requested ID, or one page of books
      */
     @GET
-    public List<Book> getAllBooks() {
+    public Response getAllBooks(
+            @QueryParam("ids") String ids,
+            @QueryParam("fields") String fields,
+            @QueryParam("expand") String expand,
+            @QueryParam("minPrice") Double minPrice,
+            @QueryParam("maxPrice") Double maxPrice,
+            @QueryParam("fromYear") Integer fromYear,
+            @QueryParam("toYear") Integer toYear,
+            @QueryParam("sort") String sort,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("limit") Integer limit) {
+        boolean paged = minPrice != null || maxPrice != null || fromYear != null || toYear != null
+                || sort != null || cursor != null || limit != null;
+        if (ids != null) {
+            if (expand != null) {
+                LOGGER.warning("Invalid book lookup request: expand is not supported with ids");
+                throw new InvalidInputException("Cannot combine expand with ids");
+            }
+            if (paged) {
+                LOGGER.warning("Invalid book lookup request: ranges, sorting and paging are not supported with ids");
+                throw new InvalidInputException("Cannot combine ids with ranges, sort, cursor or limit");
+            }
+            return lookup(BatchIds.parse(ids), fields);
+        }
+        if (paged) {
+            return findBooks(minPrice, maxPrice, fromYear, toYear, sort, cursor, limit, fields, expand);
+        }
+        
         LOGGER.info("Retrieving all books");
-        return DataStore.getAllBooks();
+        List<Book> books = DataStore.getAllBooks();
+        if (expand != null) {
+            return Response.ok(expand(books, books, expand, fields)).build();
+        }
+        return Response.ok(fields == null ? books : Projections.BOOK.select(fields).ofAll(books)).build();
+    }
+    
+    /**
+     * Count books per author, decade, price band and availability, optionally only among
+     * the books with the given facet values
+     * @param authorId Only books by this author
+     * @param decade Only books published in this decade, e.g. 1950
+     * @param priceBand Only books in this price band, e.g. 10-20
+     * @param availability Only books that are inStock or outOfStock
+     * @return Number of matching books and their counts per facet value
+     */
+    @GET
+    @Path("/facets")
+    public BookFacets getBookFacets(
+            @QueryParam(FacetIndex.AUTHOR) String authorId,
+            @QueryParam(FacetIndex.DECADE) String decade,
+            @QueryParam(FacetIndex.PRICE_BAND) String priceBand,
+            @QueryParam(FacetIndex.AVAILABILITY) String availability) {
+        Map<String, String> filter = new LinkedHashMap<>();
+        if (authorId != null) {
+            filter.put(FacetIndex.AUTHOR, authorId);
+        }
+        if (decade != null) {
+            filter.put(FacetIndex.DECADE, decade);
+        }
+        if (priceBand != null) {
+            filter.put(FacetIndex.PRICE_BAND, priceBand);
+        }
+        if (availability != null) {
+            filter.put(FacetIndex.AVAILABILITY, availability);
+        }
+        LOGGER.info("Counting book facets" + (filter.isEmpty() ? "" : " within " + filter));
+        return DataStore.getBookFacets(filter);
+    }
+    
+    /**
+     * Get the books created, updated or deleted since a version
+     * @param since Version from the previous response, or 0 to start
+     * @param limit Maximum number of books to return
+     * @return Changed books and the version to pass as {@code since} next time
+     */
+    @GET
+    @Path("/changes")
+    public BookChanges getBookChanges(
+            @QueryParam("since") @DefaultValue("0") long since,
+            @QueryParam("limit") @DefaultValue("" + DEFAULT_CHANGES_LIMIT) int limit) {
+        LOGGER.info("Retrieving book changes since version " + since);
+        
+        if (since < 0) {
+            LOGGER.warning("Invalid book changes request: since=" + since);
+            throw new InvalidInputException("Version cannot be negative");
+        }
+        
+        if (limit <= 0 || limit > MAX_CHANGES_LIMIT) {
+            LOGGER.warning("Invalid book changes request: limit=" + limit);
+            throw new InvalidInputException("Limit must be between 1 and " + MAX_CHANGES_LIMIT);
+        }
+        
+        BookChanges changes = DataStore.getBookChanges(since, limit);
+        if (changes.isResync()) {
+            LOGGER.warning("Book changes since version " + since + " are no longer retained, client must resync");
+        } else {
+            LOGGER.info("Retrieved " + changes.getChanges().size() + " book changes up to version " + changes.getVersion());
+        }
+        return changes;
     }
     
     /**
      * Get a book by ID
      * @param id ID of the book to retrieve
+     * @param fields Optional comma-separated fields to include
+     * @param expand Optional related entities to include (author)
      * @return Book with the specified ID
      */
     @GET
     @Path("/{id}")
-    public Book getBookById(@PathParam("id") int id) {
+    public Response getBookById(
+            @PathParam("id") int id,
+            @QueryParam("fields") String fields,
+            @QueryParam("expand") String expand) {
         LOGGER.info("Retrieving book with ID: " + id);
         
         Book book = DataStore.getBookById(id);
@@ -105,7 +250,47 @@ public class BookResource {
             LOGGER.warning("Book with ID " + id + " not found");
             throw new BookNotFoundException(id);
         }
-        return book;
+        HotKeys.record(HotKeys.Type.BOOK, id);
+        if (expand != null) {
+            return Response.ok(expand(book, List.of(book), expand, fields)).build();
+        }
+        return Response.ok(fields == null ? book : Projections.BOOK.select(fields).of(book)).build();
+    }
+    
+    /**
+     * Get the books most often bought in the same order as a book
+     * @param id ID of the book
+     * @param limit Maximum number of books to return
+     * @return Related books, most often bought together first
+     */
+    @GET
+    @Path("/{id}/related")
+    public List<RelatedBook> getRelatedBooks(
+            @PathParam("id") int id,
+            @QueryParam("limit") @DefaultValue("5") int limit) {
+        LOGGER.info("Retrieving books bought together with book ID: " + id);
+        
+        if (DataStore.getBookById(id) == null) {
+            LOGGER.warning("Book with ID " + id + " not found");
+            throw new BookNotFoundException(id);
+        }
+        
+        if (limit <= 0 || limit > CoPurchases.MAX_RELATED) {
+            LOGGER.warning("Invalid related books request: limit=" + limit);
+            throw new InvalidInputException("Limit must be between 1 and " + CoPurchases.MAX_RELATED);
+        }
+        
+        List<RelatedBook> related = new ArrayList<>(limit);
+        for (long slot : CoPurchases.related(id)) {
+            Book book = DataStore.getBookById(CoPurchases.bookIdOf(slot));
+            if (book != null) { // skip deleted books
+                related.add(new RelatedBook(book, CoPurchases.countOf(slot)));
+                if (related.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return related;
     }
     
     /**
@@ -137,6 +322,16 @@ public class BookResource {
             throw new InvalidInputException("Publication year cannot be in the future");
         }
         
+        if (book.getPrice() < 0) {
+            LOGGER.warning("Invalid book update request: negative price: " + book.getPrice());
+            throw new InvalidInputException("Book price cannot be negative");
+        }
+        
+        if (!(book.getPrice() <= MAX_PRICE)) {
+            LOGGER.warning("Invalid book update request: price too high: " + book.getPrice());
+            throw new InvalidInputException("Book price cannot be more than " + MAX_PRICE);
+        }
+        
         book.setId(id);
         Book updatedBook = DataStore.updateBook(book);
         
@@ -165,4 +360,100 @@ public class BookResource {
         LOGGER.info("Book deleted successfully: ID=" + id);
         return Response.noContent().build();
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Look up books by ID
+     * @param request IDs to look up
+     * @param fields Optional comma-separated fields to include
+     * @return One lookup result per requested ID, in request order
+     */
+    @POST
+    @Path("/batch")
+    public Response getBatch(BatchRequest request, @QueryParam("fields") String fields) {
+        return lookup(BatchIds.of(request), fields);
+    }
+    
+    private Response findBooks(Double minPrice, Double maxPrice, Integer fromYear, Integer toYear,
+            String sort, String cursor, Integer limit, String fields, String expand) {
+        LOGGER.info("Retrieving books: price " + minPrice + " to " + maxPrice + ", year " + fromYear + " to " + toYear
+                + ", sort " + sort);
+        
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            LOGGER.warning("Invalid book page request: limit=" + limit);
+            throw new InvalidInputException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        
+        double lowPrice = minPrice != null ? minPrice : Double.NEGATIVE_INFINITY;
+        double highPrice = maxPrice != null ? maxPrice : Double.POSITIVE_INFINITY;
+        if (!(lowPrice <= highPrice)) {
+            LOGGER.warning("Invalid book page request: minPrice=" + minPrice + ", maxPrice=" + maxPrice);
+            throw new InvalidInputException("minPrice cannot be greater than maxPrice");
+        }
+        
+        int lowYear = fromYear != null ? fromYear : Integer.MIN_VALUE;
+        int highYear = toYear != null ? toYear : Integer.MAX_VALUE;
+        if (lowYear > highYear) {
+            LOGGER.warning("Invalid book page request: fromYear=" + fromYear + ", toYear=" + toYear);
+            throw new InvalidInputException("fromYear cannot be after toYear");
+        }
+        
+        // Without a sort, read from the index of whichever range was given, price by default
+        boolean descending = sort != null && sort.startsWith("-");
+        String sortField = descending ? sort.substring(1) : sort;
+        boolean byPrice;
+        if (sortField == null) {
+            byPrice = minPrice != null || maxPrice != null || (fromYear == null && toYear == null);
+        } else if (sortField.equals("price")) {
+            byPrice = true;
+        } else if (sortField.equals("publicationYear")) {
+            byPrice = false;
+        } else {
+            LOGGER.warning("Invalid book page request: sort=" + sort);
+            throw new InvalidInputException("Sort must be price or publicationYear, prefixed with - for descending");
+        }
+        
+        SortedIndex.Key after = null;
+        if (cursor != null) {
+            after = SortedIndex.Key.parse(cursor);
+            if (after == null) {
+                LOGGER.warning("Invalid book page request: cursor=" + cursor);
+                throw new InvalidInputException("Invalid cursor: " + cursor);
+            }
+        }
+        
+        SortedIndex.Page<Book> page = DataStore.findBooks(lowPrice, highPrice, lowYear, highYear, byPrice, descending, after, pageSize);
+        List<Book> books = page.getItems();
+        LOGGER.info("Retrieved " + books.size() + " books");
+        Response.ResponseBuilder response;
+        if (expand != null) {
+            response = Response.ok(expand(books, books, expand, fields));
+        } else {
+            response = Response.ok(fields == null ? books : Projections.BOOK.select(fields).ofAll(books));
+        }
+        if (page.getNext() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNext());
+        }
+        return response.build();
+    }
+    
+    private Response lookup(int[] ids, String fields) {
+        LOGGER.info("Looking up " + ids.length + " books by ID");
+        List<LookupResult<Book>> results = DataStore.getBooksByIds(ids);
+        return Response.ok(fields == null ? results : Projections.BOOK.select(fields).ofLookups(results)).build();
+    }
+    
+    private static Expanded expand(Object data, List<Book> books, String expand, String fields) {
+        if (fields != null) {
+            LOGGER.warning("Invalid book request: fields cannot be combined with expand");
+            throw new InvalidInputException("Cannot combine fields with expand");
+        }
+        Expansion expansion = Expansion.parse(expand, EXPANSIONS);
+        for (Book book : books) {
+            expansion.author(book.getAuthorId());
+        }
+        Expanded expanded = expansion.wrap(data);
+        LOGGER.info("Expanded " + books.size() + " books with " + expand);
+        return expanded;
+    }
+}
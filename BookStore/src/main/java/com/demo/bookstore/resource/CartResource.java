@@ -8,7 +8,10 @@ import com.demo.bookstore.exception.OutOfStockException;
 import com.demo.bookstore.model.Book;
 import com.demo.bookstore.model.CartItem;
 import com.demo.bookstore.model.Customer;
+import com.demo.bookstore.model.PricedCart;
+import com.demo.bookstore.provider.BinaryFormats;
 import com.demo.bookstore.util.DataStore;
+import com.demo.bookstore.util.HotKeys;
 
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
@@ -22,15 +25,14 @@ import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
 
-import java.util.List;
 import java.util.logging.Logger;
 
 /**
  * Resource class for shopping cart operations
  */
 @Path("/customers/{customerId}/cart")
-@Produces(MediaType.APPLICATION_JSON)
-@Consumes(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_SMILE, BinaryFormats.APPLICATION_CBOR})
+@Consumes({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_SMILE, BinaryFormats.APPLICATION_CBOR})
 public class CartResource {
 
     private static final Logger LOGGER = Logger.getLogger(CartResource.class.getName());
@@ -57,6 +59,7 @@ public class CartResource {
             LOGGER.warning("Add to cart failed: customer with ID " + customerId + " not found");
             throw new CustomerNotFoundException(customerId);
         }
+        HotKeys.record(HotKeys.Type.CUSTOMER, customerId);
         
         Book book = DataStore.getBookById(cartItem.getBookId());
         if (book == null) {
@@ -78,12 +81,12 @@ public class CartResource {
     }
     
     /**
-     * Get the customer's cart
+     * Get the customer's cart with current prices, subtotal and stock availability
      * @param customerId ID of the customer
-     * @return List of cart items
+     * @return Priced cart
      */
     @GET
-    public List<CartItem> getCart(@PathParam("customerId") int customerId) {
+    public PricedCart getCart(@PathParam("customerId") int customerId) {
         LOGGER.info("Retrieving cart for customer ID: " + customerId);
         
         Customer customer = DataStore.getCustomerById(customerId);
@@ -91,14 +94,16 @@ public class CartResource {
             LOGGER.warning("Get cart failed: customer with ID " + customerId + " not found");
             throw new CustomerNotFoundException(customerId);
         }
+        HotKeys.record(HotKeys.Type.CUSTOMER, customerId);
         
-        List<CartItem> cart = DataStore.getCart(customerId);
-        if (cart.isEmpty()) {
+        PricedCart cart = DataStore.getPricedCart(customerId);
+        if (cart == null || cart.getLines().isEmpty()) {
             LOGGER.warning("Cart not found for customer ID: " + customerId);
             throw new CartNotFoundException(customerId);
         }
         
-        LOGGER.info("Retrieved " + cart.size() + " cart items for customer ID=" + customerId);
+        LOGGER.info("Retrieved " + cart.getLines().size() + " cart items for customer ID=" + customerId + 
+                   ", subtotal=" + cart.getSubtotal());
         return cart;
     }
     
@@ -130,6 +135,7 @@ public class CartResource {
             LOGGER.warning("Update cart item failed: customer with ID " + customerId + " not found");
             throw new CustomerNotFoundException(customerId);
         }
+        HotKeys.record(HotKeys.Type.CUSTOMER, customerId);
         
         Book book = DataStore.getBookById(bookId);
         if (book == null) {
@@ -137,20 +143,6 @@ public class CartResource {
             throw new BookNotFoundException(bookId);
         }
         
-        List<CartItem> cart = DataStore.getCart(customerId);
-        boolean itemExists = false;
-        for (CartItem item : cart) {
-            if (item.getBookId() == bookId) {
-                itemExists = true;
-                break;
-            }
-        }
-        
-        if (!itemExists) {
-            LOGGER.warning("Update cart item failed: item does not exist in the cart");
-            throw new InvalidInputException("Item does not exist in the cart");
-        }
-        
         if (book.getStock() < cartItem.getQuantity()) {
             LOGGER.warning("Update cart item failed: insufficient stock for book ID " + bookId + 
                          " (requested: " + cartItem.getQuantity() + ", available: " + book.getStock() + ")");
@@ -158,7 +150,10 @@ public class CartResource {
         }
         
         cartItem.setBookId(bookId);
-        DataStore.updateCartItem(customerId, cartItem);
+        if (!DataStore.updateCartItem(customerId, cartItem)) {
+            LOGGER.warning("Update cart item failed: item does not exist in the cart");
+            throw new InvalidInputException("Item does not exist in the cart");
+        }
         
         LOGGER.info("Cart item updated successfully: customer ID=" + customerId + 
                    ", book ID=" + bookId + ", new quantity=" + cartItem.getQuantity());
@@ -185,6 +180,7 @@ public class CartResource {
             LOGGER.warning("Remove cart item failed: customer with ID " + customerId + " not found");
             throw new CustomerNotFoundException(customerId);
         }
+        HotKeys.record(HotKeys.Type.CUSTOMER, customerId);
         
         Book book = DataStore.getBookById(bookId);
         if (book == null) {
@@ -0,0 +1,97 @@
+package com.demo.bookstore.resource;
+
+import com.demo.bookstore.exception.InvalidInputException;
+import com.demo.bookstore.model.ClusterMember;
+import com.demo.bookstore.model.ClusterView;
+import com.demo.bookstore.model.CustomerHandoff;
+import com.demo.bookstore.util.Cluster;
+
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.PUT;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Resource class for cluster membership and the moving of customers between nodes
+ */
+@Path("/cluster")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class ClusterResource {
+
+    private static final Logger LOGGER = Logger.getLogger(ClusterResource.class.getName());
+
+    /**
+     * Get the cluster membership as this node sees it
+     * @return Membership
+     */
+    @GET
+    public ClusterView getCluster() {
+        return Cluster.getView();
+    }
+
+    /**
+     * Adopt a membership change announced by another node
+     * @param view New membership
+     * @return Membership after the change
+     */
+    @PUT
+    public ClusterView updateCluster(ClusterView view) {
+        if (view == null || view.getMembers() == null) {
+            LOGGER.warning("Invalid cluster update: membership is missing");
+            throw new InvalidInputException("Cluster membership is required");
+        }
+        LOGGER.info("Received cluster membership version " + view.getVersion() + " from " + view.getSelf());
+        return Cluster.apply(view);
+    }
+
+    /**
+     * Add a node to the cluster; customers it now owns are handed to it
+     * @param member Joining node
+     * @return Membership after the join
+     */
+    @POST
+    @Path("/members")
+    public ClusterView addMember(ClusterMember member) {
+        if (member == null || member.getUrl() == null || !member.getUrl().startsWith("http")) {
+            LOGGER.warning("Invalid cluster join request: url=" + (member != null ? member.getUrl() : "null"));
+            throw new InvalidInputException("Base URL of the joining node is required");
+        }
+        LOGGER.info("Node " + member.getUrl() + " is joining the cluster");
+        return Cluster.addMember(member.getUrl());
+    }
+
+    /**
+     * Take this node out of the cluster, handing all its customers to the other nodes
+     * @return Membership after leaving
+     */
+    @POST
+    @Path("/leave")
+    public ClusterView leave() {
+        LOGGER.info("Leaving the cluster");
+        return Cluster.leave();
+    }
+
+    /**
+     * Take over customers whose ownership moved to this node
+     * @param handoffs Customers with their carts and orders
+     * @return Empty response
+     */
+    @POST
+    @Path("/handoff")
+    public Response receiveHandoff(List<CustomerHandoff> handoffs) {
+        if (handoffs == null) {
+            LOGGER.warning("Invalid handoff: no customers");
+            throw new InvalidInputException("Customers to hand off are required");
+        }
+        Cluster.receive(handoffs);
+        return Response.noContent().build();
+    }
+}
@@ -2,8 +2,13 @@ package com.demo.bookstore.resource;
 
 import com.demo.bookstore.exception.CustomerNotFoundException;
 import com.demo.bookstore.exception.InvalidInputException;
+import com.demo.bookstore.model.BatchRequest;
 import com.demo.bookstore.model.Customer;
+import com.demo.bookstore.model.LookupResult;
+import com.demo.bookstore.provider.BinaryFormats;
+import com.demo.bookstore.util.BatchIds;
 import com.demo.bookstore.util.DataStore;
+import com.demo.bookstore.util.Projections;
 
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DELETE;
@@ -13,6 +18,7 @@ import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
@@ -24,8 +30,8 @@ import java.util.logging.Logger;
  * Resource class for Customer entity
  */
 @Path("/customers")
-@Produces(MediaType.APPLICATION_JSON)
-@Consumes(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_SMILE, BinaryFormats.APPLICATION_CBOR})
+@Consumes({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_SMILE, BinaryFormats.APPLICATION_CBOR})
 public class CustomerResource {
 
     private static final Logger LOGGER = Logger.getLogger(CustomerResource.class.getName());
@@ -62,23 +68,31 @@ public class CustomerResource {
     }
     
     /**
-     * Get all customers
-     * @return List of all customers
+     * Get all customers, or only those with the given IDs
+     * @param ids Optional comma-separated IDs to look up
+     * @param fields Optional comma-separated fields to include
+     * @return List of all customers, or one lookup result per requested ID
      */
     @GET
-    public List<Customer> getAllCustomers() {
+    public Response getAllCustomers(@QueryParam("ids") String ids, @QueryParam("fields") String fields) {
+        if (ids != null) {
+            return lookup(BatchIds.parse(ids), fields);
+        }
+        
         LOGGER.info("Retrieving all customers");
-        return DataStore.getAllCustomers();
+        List<Customer> customers = DataStore.getAllCustomers();
+        return Response.ok(fields == null ? customers : Projections.CUSTOMER.select(fields).ofAll(customers)).build();
     }
     
     /**
      * Get a customer by ID
      * @param id ID of the customer to retrieve
+     * @param fields Optional comma-separated fields to include
      * @return Customer with the specified ID
      */
     @GET
     @Path("/{id}")
-    public Customer getCustomerById(@PathParam("id") int id) {
+    public Response getCustomerById(@PathParam("id") int id, @QueryParam("fields") String fields) {
         LOGGER.info("Retrieving customer with ID: " + id);
         
         Customer customer = DataStore.getCustomerById(id);
@@ -86,7 +100,7 @@ public class CustomerResource {
             LOGGER.warning("Customer with ID " + id + " not found");
             throw new CustomerNotFoundException(id);
         }
-        return customer;
+        return Response.ok(fields == null ? customer : Projections.CUSTOMER.select(fields).of(customer)).build();
     }
     
     /**
@@ -140,4 +154,22 @@ public class CustomerResource {
         LOGGER.info("Customer deleted successfully: ID=" + id);
         return Response.noContent().build();
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Look up customers by ID
+     * @param request IDs to look up
+     * @param fields Optional comma-separated fields to include
+     * @return One lookup result per requested ID, in request order
+     */
+    @POST
+    @Path("/batch")
+    public Response getBatch(BatchRequest request, @QueryParam("fields") String fields) {
+        return lookup(BatchIds.of(request), fields);
+    }
+    
+    private Response lookup(int[] ids, String fields) {
+        LOGGER.info("Looking up " + ids.length + " customers by ID");
+        List<LookupResult<Customer>> results = DataStore.getCustomersByIds(ids);
+        return Response.ok(fields == null ? results : Projections.CUSTOMER.select(fields).ofLookups(results)).build();
+    }
+}
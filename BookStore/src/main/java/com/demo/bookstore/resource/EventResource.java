@@ -0,0 +1,94 @@
+package com.demo.bookstore.resource;
+
+import com.demo.bookstore.exception.InvalidInputException;
+import com.demo.bookstore.util.ChangeFeed;
+
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Resource class streaming catalog change events over Server-Sent Events
+ */
+@Path("/events")
+public class EventResource {
+
+    private static final Logger LOGGER = Logger.getLogger(EventResource.class.getName());
+
+    /**
+     * Subscribe to change events
+     * @param sink Event sink of the connection
+     * @param sse SSE context
+     * @param lastEventId ID of the last event received, to resume after a disconnect
+     * @param types Comma-separated event types to receive (created, deleted, price, stock)
+     * @param bookIds Comma-separated book IDs to receive events for
+     */
+    @GET
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public void subscribe(
+            @Context SseEventSink sink,
+            @Context Sse sse,
+            @HeaderParam(HttpHeaders.LAST_EVENT_ID_HEADER) String lastEventId,
+            @QueryParam("types") String types,
+            @QueryParam("bookIds") String bookIds) {
+        LOGGER.info("Received event subscription: types=" + types + ", bookIds=" + bookIds + ", lastEventId=" + lastEventId);
+
+        Long resumeAfter = null;
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            try {
+                resumeAfter = Long.parseLong(lastEventId.trim());
+            } catch (NumberFormatException e) {
+                resumeAfter = -1L;
+            }
+            if (resumeAfter < 0) {
+                LOGGER.warning("Invalid event subscription: Last-Event-ID=" + lastEventId);
+                throw new InvalidInputException("Last-Event-ID must be an event ID from this feed");
+            }
+        }
+
+        ChangeFeed.subscribe(sink, sse, resumeAfter, parseTypes(types), parseIds(bookIds));
+    }
+
+    private static Set<String> parseTypes(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        Set<String> types = new HashSet<>();
+        for (String type : value.split(",")) {
+            String trimmed = type.trim();
+            if (!ChangeFeed.TYPES.contains(trimmed)) {
+                LOGGER.warning("Invalid event subscription: type=" + trimmed);
+                throw new InvalidInputException("Event type must be one of " + ChangeFeed.TYPES);
+            }
+            types.add(trimmed);
+        }
+        return types;
+    }
+
+    private static Set<Integer> parseIds(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        Set<Integer> ids = new HashSet<>();
+        for (String id : value.split(",")) {
+            try {
+                ids.add(Integer.parseInt(id.trim()));
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid event subscription: bookId=" + id);
+                throw new InvalidInputException("Book IDs must be comma-separated integers");
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,42 @@
+package com.demo.bookstore.resource;
+
+import com.demo.bookstore.model.HealthStatus;
+import com.demo.bookstore.util.Health;
+
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Resource class for load balancer health checks
+ */
+@Path("/health")
+@Produces(MediaType.APPLICATION_JSON)
+public class HealthResource {
+
+    /**
+     * Check that the server is running and answering requests
+     * @return Always UP
+     */
+    @GET
+    @Path("/live")
+    public HealthStatus live() {
+        return new HealthStatus("UP", null);
+    }
+
+    /**
+     * Check whether the server should be sent traffic
+     * @return 200 with UP when ready, or 503 with DOWN and the reason when not
+     */
+    @GET
+    @Path("/ready")
+    public Response ready() {
+        String reason = Health.notReadyReason();
+        if (reason != null) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity(new HealthStatus("DOWN", reason)).build();
+        }
+        return Response.ok(new HealthStatus("UP", null)).build();
+    }
+}
@@ -0,0 +1,27 @@
+package com.demo.bookstore.resource;
+
+import com.demo.bookstore.util.Metrics;
+
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+
+import java.util.Map;
+
+/**
+ * Resource class exposing operational counters and gauges
+ */
+@Path("/metrics")
+@Produces(MediaType.APPLICATION_JSON)
+public class MetricsResource {
+
+    /**
+     * Get all metrics
+     * @return Metric values by name
+     */
+    @GET
+    public Map<String, Long> getMetrics() {
+        return Metrics.snapshot();
+    }
+}
@@ -8,100 +8,189 @@ import com.demo.bookstore.exception.OutOfStockException;
 import com.demo.bookstore.model.Book;
 import com.demo.bookstore.model.CartItem;
 import com.demo.bookstore.model.Customer;
+import com.demo.bookstore.model.Expanded;
 import com.demo.bookstore.model.Order;
+import com.demo.bookstore.model.PricedCart;
+import com.demo.bookstore.model.PricedCartLine;
+import com.demo.bookstore.provider.BinaryFormats;
+import com.demo.bookstore.util.CoPurchases;
 import com.demo.bookstore.util.DataStore;
+import com.demo.bookstore.util.Expansion;
+import com.demo.bookstore.util.HotKeys;
+import com.demo.bookstore.util.IdempotencyStore;
+import com.demo.bookstore.util.OrderHistoryStore;
+import com.demo.bookstore.util.PackedOrder;
+import com.demo.bookstore.util.Projections;
+import com.demo.bookstore.util.SalesAnalytics;
 
 import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status;
 
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Logger;
 
 /**
  * Resource class for Order operations
  */
 @Path("/customers/{customerId}/orders")
-@Produces(MediaType.APPLICATION_JSON)
-@Consumes(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_SMILE, BinaryFormats.APPLICATION_CBOR})
+@Consumes({MediaType.APPLICATION_JSON, BinaryFormats.APPLICATION_SMILE, BinaryFormats.APPLICATION_CBOR})
 public class OrderResource {
 
     private static final Logger LOGGER = Logger.getLogger(OrderResource.class.getName());
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 255;
+    private static final Set<String> EXPANSIONS = Set.of("items.book", "items.book.author", "customer");
+    private static final IdempotencyStore<Order> placedOrders = IdempotencyStore.fromSystemProperties("orders.idempotency");
 
     /**
      * Place a new order from the customer's cart
      * @param customerId ID of the customer
+     * @param idempotencyKey Optional key that makes retries of the same order return the first result
      * @return Response with created order
      */
     @POST
-    public Response placeOrder(@PathParam("customerId") int customerId) {
+    public Response placeOrder(
+            @PathParam("customerId") int customerId,
+            @HeaderParam(IDEMPOTENCY_KEY_HEADER) String idempotencyKey) {
         LOGGER.info("Received request to place order for customer ID: " + customerId);
         
+        // Checkout runs as one command on the customer's shard, so it never overlaps cart changes
+        if (idempotencyKey == null) {
+            return Response.status(Status.CREATED).entity(DataStore.onCustomerShard(customerId, () -> checkout(customerId))).build();
+        }
+        
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH) {
+            LOGGER.warning("Order placement failed: invalid idempotency key for customer ID " + customerId);
+            throw new InvalidInputException("Idempotency key must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+        
+        IdempotencyStore.Outcome<Order> outcome = placedOrders.execute(customerId + ":" + idempotencyKey,
+                () -> DataStore.onCustomerShard(customerId, () -> checkout(customerId)));
+        if (outcome.isReplayed()) {
+            LOGGER.info("Replayed order ID=" + outcome.getResult().getId() + " for idempotency key of customer ID=" + customerId);
+            return Response.status(Status.CREATED)
+                    .entity(outcome.getResult())
+                    .header(IDEMPOTENT_REPLAYED_HEADER, "true")
+                    .build();
+        }
+        return Response.status(Status.CREATED).entity(outcome.getResult()).build();
+    }
+    
+    private Order checkout(int customerId) {
         Customer customer = DataStore.getCustomerById(customerId);
         if (customer == null) {
             LOGGER.warning("Order placement failed: customer with ID " + customerId + " not found");
             throw new CustomerNotFoundException(customerId);
         }
+        HotKeys.record(HotKeys.Type.CUSTOMER, customerId);
         
-        List<CartItem> cart = DataStore.getCart(customerId);
-        if (cart.isEmpty()) {
+        PricedCart cart = DataStore.getPricedCart(customerId);
+        if (cart == null || cart.getLines().isEmpty()) {
             LOGGER.warning("Order placement failed: cart is empty for customer ID " + customerId);
             throw new CartNotFoundException(customerId);
         }
         
-        // Validate stock and calculate total price
-        double totalPrice = 0.0;
+        // Validate stock; the cart already carries current prices and its subtotal
+        double totalPrice = cart.getSubtotal();
         List<CartItem> orderItems = new ArrayList<>();
+        List<Book> orderBooks = new ArrayList<>();
+        double[] unitPrices = new double[cart.getLines().size()];
         
-        for (CartItem item : cart) {
-            Book book = DataStore.getBookById(item.getBookId());
+        for (PricedCartLine line : cart.getLines()) {
+            Book book = DataStore.getBookById(line.getBookId());
             if (book == null) {
-                LOGGER.warning("Order placement failed: book with ID " + item.getBookId() + " not found");
-                throw new BookNotFoundException(item.getBookId());
+                LOGGER.warning("Order placement failed: book with ID " + line.getBookId() + " not found");
+                throw new BookNotFoundException(line.getBookId());
             }
             
-            if (book.getStock() < item.getQuantity()) {
+            if (book.getStock() < line.getQuantity()) {
                 LOGGER.warning("Order placement failed: insufficient stock for book ID " + book.getId() + 
-                            " (requested: " + item.getQuantity() + ", available: " + book.getStock() + ")");
-                throw new OutOfStockException(book.getId(), item.getQuantity(), book.getStock());
+                            " (requested: " + line.getQuantity() + ", available: " + book.getStock() + ")");
+                throw new OutOfStockException(book.getId(), line.getQuantity(), book.getStock());
             }
             
-            totalPrice += book.getPrice() * item.getQuantity();
-            
-            // Update book stock
-            book.setStock(book.getStock() - item.getQuantity());
-            DataStore.updateBook(book);
-            
             // Add to order items
-            orderItems.add(new CartItem(item.getBookId(), item.getQuantity()));
+            unitPrices[orderItems.size()] = line.getUnitPrice();
+            orderItems.add(new CartItem(line.getBookId(), line.getQuantity()));
+            orderBooks.add(book);
+        }
+        
+        // Take the stock; if a concurrent order got there first, put back what was taken
+        for (int i = 0; i < orderItems.size(); i++) {
+            CartItem item = orderItems.get(i);
+            if (DataStore.adjustStock(item.getBookId(), -item.getQuantity()) == null) {
+                for (int j = 0; j < i; j++) {
+                    DataStore.adjustStock(orderItems.get(j).getBookId(), orderItems.get(j).getQuantity());
+                }
+                Book book = DataStore.getBookById(item.getBookId());
+                if (book == null) {
+                    LOGGER.warning("Order placement failed: book with ID " + item.getBookId() + " not found");
+                    throw new BookNotFoundException(item.getBookId());
+                }
+                LOGGER.warning("Order placement failed: insufficient stock for book ID " + book.getId() + 
+                            " (requested: " + item.getQuantity() + ", available: " + book.getStock() + ")");
+                throw new OutOfStockException(book.getId(), item.getQuantity(), book.getStock());
+            }
         }
         
         // Create the order
-        Order order = DataStore.createOrder(customerId, orderItems, totalPrice);
+        Order order = DataStore.createOrder(customerId, orderItems, unitPrices, totalPrice);
         
         // Clear the cart
         DataStore.clearCart(customerId);
         
+        SalesAnalytics.recordOrder(order, orderBooks, unitPrices);
+        int[] orderedBookIds = new int[orderItems.size()];
+        for (int i = 0; i < orderedBookIds.length; i++) {
+            orderedBookIds[i] = orderItems.get(i).getBookId();
+        }
+        CoPurchases.recordOrder(orderedBookIds);
+        
         LOGGER.info("Order placed successfully: customer ID=" + customerId + 
                   ", order ID=" + order.getId() + ", total items=" + orderItems.size() + 
                   ", total price=" + totalPrice);
-        return Response.status(Status.CREATED).entity(order).build();
+        return order;
     }
     
     /**
-     * Get all orders for a customer
+     * Get a page of a customer's orders, oldest first
      * @param customerId ID of the customer
-     * @return List of orders
+     * @param from Only orders created at or after this time (ISO-8601 instant or epoch milliseconds)
+     * @param to Only orders created before this time (ISO-8601 instant or epoch milliseconds)
+     * @param limit Maximum number of orders to return
+     * @param cursor Cursor from the X-Next-Cursor header of the previous page
+     * @param fields Optional comma-separated fields to include
+     * @param expand Optional related entities to include (items.book, items.book.author, customer)
+     * @return Response with the list of orders
      */
     @GET
-    public List<Order> getCustomerOrders(@PathParam("customerId") int customerId) {
+    public Response getCustomerOrders(
+            @PathParam("customerId") int customerId,
+            @QueryParam("from") String from,
+            @QueryParam("to") String to,
+            @QueryParam("limit") @DefaultValue("" + DEFAULT_PAGE_SIZE) int limit,
+            @QueryParam("cursor") @DefaultValue("0") int cursor,
+            @QueryParam("fields") String fields,
+            @QueryParam("expand") String expand) {
         LOGGER.info("Retrieving orders for customer ID: " + customerId);
         
         Customer customer = DataStore.getCustomerById(customerId);
@@ -109,23 +198,55 @@ public class OrderResource {
             LOGGER.warning("Get orders failed: customer with ID " + customerId + " not found");
             throw new CustomerNotFoundException(customerId);
         }
+        HotKeys.record(HotKeys.Type.CUSTOMER, customerId);
+        
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            LOGGER.warning("Invalid order page request: limit=" + limit);
+            throw new InvalidInputException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        
+        if (cursor < 0) {
+            LOGGER.warning("Invalid order page request: cursor=" + cursor);
+            throw new InvalidInputException("Cursor cannot be negative");
+        }
+        
+        long fromTime = parseTime(from, Long.MIN_VALUE);
+        long toTime = parseTime(to, Long.MAX_VALUE);
+        
+        OrderHistoryStore.Page page = DataStore.getCustomerOrders(customerId, fromTime, toTime, cursor, limit);
+        List<Order> orders = new ArrayList<>(page.getOrders().size());
+        for (PackedOrder packed : page.getOrders()) {
+            orders.add(packed.toOrder());
+        }
         
-        List<Order> orders = DataStore.getCustomerOrders(customerId);
         LOGGER.info("Retrieved " + orders.size() + " orders for customer ID=" + customerId);
-        return orders;
+        Response.ResponseBuilder response;
+        if (expand != null) {
+            response = Response.ok(expand(customerId, orders, orders, expand, fields));
+        } else {
+            response = Response.ok(fields == null ? orders : Projections.ORDER.select(fields).ofAll(orders));
+        }
+        if (page.getNextCursor() >= 0) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.build();
     }
     
     /**
      * Get a specific order for a customer
      * @param customerId ID of the customer
      * @param orderId ID of the order
+     * @param fields Optional comma-separated fields to include
+     * @param expand Optional related entities to include (items.book, items.book.author, customer)
      * @return Order details
      */
     @GET
     @Path("/{orderId}")
-    public Order getOrder(
+    public Response getOrder(
             @PathParam("customerId") int customerId,
-            @PathParam("orderId") int orderId) {
+            @PathParam("orderId") int orderId,
+            @QueryParam("fields") String fields,
+            @QueryParam("expand") String expand) {
         
         LOGGER.info("Retrieving order with ID: " + orderId + " for customer ID: " + customerId);
         
@@ -134,6 +255,7 @@ public class OrderResource {
             LOGGER.warning("Get order failed: customer with ID " + customerId + " not found");
             throw new CustomerNotFoundException(customerId);
         }
+        HotKeys.record(HotKeys.Type.CUSTOMER, customerId);
         
         Order order = DataStore.getCustomerOrderById(customerId, orderId);
         if (order == null) {
@@ -143,6 +265,48 @@ public class OrderResource {
         }
         
         LOGGER.info("Retrieved order with ID=" + orderId + " for customer ID=" + customerId);
-        return order;
+        if (expand != null) {
+            return Response.ok(expand(customerId, order, List.of(order), expand, fields)).build();
+        }
+        return Response.ok(fields == null ? order : Projections.ORDER.select(fields).of(order)).build();
+    }
+    
+    private static Expanded expand(int customerId, Object data, List<Order> orders, String expand, String fields) {
+        if (fields != null) {
+            LOGGER.warning("Invalid order request: fields cannot be combined with expand");
+            throw new InvalidInputException("Cannot combine fields with expand");
+        }
+        Expansion expansion = Expansion.parse(expand, EXPANSIONS);
+        if (expansion.has("customer")) {
+            expansion.customer(customerId);
+        }
+        if (expansion.has("items.book")) {
+            for (Order order : orders) {
+                for (CartItem item : order.getItems()) {
+                    Book book = expansion.book(item.getBookId());
+                    if (book != null && expansion.has("items.book.author")) {
+                        expansion.author(book.getAuthorId());
+                    }
+                }
+            }
+        }
+        Expanded expanded = expansion.wrap(data);
+        LOGGER.info("Expanded " + orders.size() + " orders for customer ID=" + customerId + " with " + expand);
+        return expanded;
+    }
+    
+    private static long parseTime(String value, long defaultValue) {
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            if (value.chars().allMatch(Character::isDigit)) {
+                return Long.parseLong(value);
+            }
+            return Instant.parse(value).toEpochMilli();
+        } catch (NumberFormatException | DateTimeParseException e) {
+            LOGGER.warning("Invalid order page request: bad time value " + value);
+            throw new InvalidInputException("Time must be an ISO-8601 instant or epoch milliseconds: " + value);
+        }
     }
 } 
\ No newline at end of file
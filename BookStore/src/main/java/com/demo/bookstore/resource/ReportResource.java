@@ -0,0 +1,40 @@
+package com.demo.bookstore.resource;
+
+import com.demo.bookstore.model.ReportQuery;
+import com.demo.bookstore.model.ReportResult;
+import com.demo.bookstore.util.ReportEngine;
+
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+
+import java.util.logging.Logger;
+
+/**
+ * Resource class for ad-hoc reports over orders and the catalog
+ */
+@Path("/reports")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class ReportResource {
+
+    private static final Logger LOGGER = Logger.getLogger(ReportResource.class.getName());
+
+    /**
+     * Run a report
+     * @param query Filters, group-by dimensions and time budget of the report
+     * @return Report rows with scan statistics
+     */
+    @POST
+    public ReportResult runReport(ReportQuery query) {
+        LOGGER.info("Received report request grouped by " + (query != null ? query.getGroupBy() : "null"));
+        
+        ReportResult result = ReportEngine.run(query);
+        
+        LOGGER.info("Report completed: rows=" + result.getRows().size() + ", scanned orders=" +
+                   result.getScannedOrders() + ", elapsed=" + result.getElapsedMillis() + " ms");
+        return result;
+    }
+}
@@ -0,0 +1,65 @@
+package com.demo.bookstore.util;
+
+import com.demo.bookstore.exception.InvalidInputException;
+import com.demo.bookstore.model.BatchRequest;
+
+import java.util.List;
+
+/**
+ * Parses and bounds the IDs of a batch lookup
+ */
+public final class BatchIds {
+
+    public static final int MAX_IDS = 1000;
+
+    private BatchIds() {
+    }
+
+    /**
+     * Parse an {@code ids} query parameter
+     * @param ids Comma-separated IDs
+     * @return IDs in request order
+     * @throws InvalidInputException if an ID is not a number or there are none or too many
+     */
+    public static int[] parse(String ids) {
+        String[] parts = ids.split(",");
+        checkCount(parts.length, ids.isBlank());
+        int[] parsed = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                parsed[i] = Integer.parseInt(parts[i].trim());
+            } catch (NumberFormatException e) {
+                throw new InvalidInputException("IDs must be comma-separated integers: " + parts[i].trim());
+            }
+        }
+        return parsed;
+    }
+
+    /**
+     * Get the IDs of a batch request body
+     * @param request Batch request
+     * @return IDs in request order
+     * @throws InvalidInputException if an ID is missing or there are none or too many
+     */
+    public static int[] of(BatchRequest request) {
+        List<Integer> ids = request != null ? request.getIds() : null;
+        checkCount(ids != null ? ids.size() : 0, ids == null || ids.isEmpty());
+        int[] parsed = new int[ids.size()];
+        for (int i = 0; i < parsed.length; i++) {
+            if (ids.get(i) == null) {
+                throw new InvalidInputException("IDs cannot be null");
+            }
+            parsed[i] = ids.get(i);
+        }
+        return parsed;
+    }
+
+    private static void checkCount(int count, boolean empty) {
+        if (empty) {
+            throw new InvalidInputException("At least one ID is required");
+        }
+        if (count > MAX_IDS) {
+            throw new InvalidInputException("At most " + MAX_IDS + " IDs can be looked up at once");
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.demo.bookstore.util;
+
+import com.demo.bookstore.model.CartItem;
+import com.demo.bookstore.model.PricedCart;
+import com.demo.bookstore.model.PricedCartLine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A customer's live cart together with the time it was last touched and its pending
+ * idle-expiry timeout. Each line carries the unit price it is currently priced at and
+ * the subtotal is adjusted on every change, so totals never need recomputing.
+ */
+public final class Cart {
+    private final int customerId;
+    private final CartLines lines = new CartLines();
+    private long subtotalCents;
+    private volatile long lastTouched;
+    private TimerWheel.Timeout<Cart> expiry;
+
+    Cart(int customerId, long now) {
+        this.customerId = customerId;
+        this.lastTouched = now;
+    }
+
+    public int getCustomerId() {
+        return customerId;
+    }
+
+    public long getLastTouched() {
+        return lastTouched;
+    }
+
+    void touch(long now) {
+        lastTouched = now;
+    }
+
+    synchronized void put(int bookId, int quantity, int unitPriceCents) {
+        subtotalCents -= lineTotal(bookId);
+        lines.put(bookId, quantity, unitPriceCents);
+        subtotalCents += (long) quantity * unitPriceCents;
+    }
+
+    synchronized boolean contains(int bookId) {
+        return lines.contains(bookId);
+    }
+
+    synchronized void remove(int bookId) {
+        subtotalCents -= lineTotal(bookId);
+        lines.remove(bookId);
+    }
+
+    /**
+     * Move a line to a new unit price, adjusting the subtotal by the difference
+     * @param bookId ID of the book whose price changed
+     * @param unitPriceCents New unit price in cents
+     */
+    synchronized void reprice(int bookId, int unitPriceCents) {
+        if (lines.contains(bookId)) {
+            subtotalCents += (long) lines.get(bookId) * (unitPriceCents - lines.priceOf(bookId));
+            lines.put(bookId, lines.get(bookId), unitPriceCents);
+        }
+    }
+
+    synchronized boolean isEmpty() {
+        return lines.isEmpty();
+    }
+
+    synchronized List<CartItem> items() {
+        List<CartItem> items = new ArrayList<>(lines.size());
+        for (int slot = 0; slot < lines.capacity(); slot++) {
+            if (lines.bookIdAt(slot) != 0) {
+                items.add(new CartItem(lines.bookIdAt(slot), lines.quantityAt(slot)));
+            }
+        }
+        return items;
+    }
+
+    synchronized int[] bookIds() {
+        int[] ids = new int[lines.size()];
+        int i = 0;
+        for (int slot = 0; slot < lines.capacity(); slot++) {
+            if (lines.bookIdAt(slot) != 0) {
+                ids[i++] = lines.bookIdAt(slot);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Copy the priced lines and subtotal as one consistent view
+     * @return Priced cart without catalog details
+     */
+    synchronized PricedCart priced() {
+        PricedCart cart = new PricedCart();
+        cart.setCustomerId(customerId);
+        int itemCount = 0;
+        for (int slot = 0; slot < lines.capacity(); slot++) {
+            if (lines.bookIdAt(slot) != 0) {
+                int quantity = lines.quantityAt(slot);
+                int unitPrice = lines.unitPriceAt(slot);
+                PricedCartLine line = new PricedCartLine();
+                line.setBookId(lines.bookIdAt(slot));
+                line.setQuantity(quantity);
+                line.setUnitPrice(unitPrice / 100.0);
+                line.setLineTotal((long) quantity * unitPrice / 100.0);
+                cart.getLines().add(line);
+                itemCount += quantity;
+            }
+        }
+        cart.setItemCount(itemCount);
+        cart.setSubtotal(subtotalCents / 100.0);
+        return cart;
+    }
+
+    private long lineTotal(int bookId) {
+        return (long) lines.get(bookId) * lines.priceOf(bookId);
+    }
+
+    TimerWheel.Timeout<Cart> getExpiry() {
+        return expiry;
+    }
+
+    void setExpiry(TimerWheel.Timeout<Cart> expiry) {
+        this.expiry = expiry;
+    }
+}
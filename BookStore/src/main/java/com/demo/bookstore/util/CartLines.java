@@ -0,0 +1,172 @@
+package com.demo.bookstore.util;
+
+/**
+ * Open-addressing bookId -> (quantity, unit price in cents) map on primitive int arrays, sized for the
+ * typical 1-10 line cart. Uses linear probing with backward-shift deletion, so it
+ * needs no tombstones and never boxes keys or values. Book IDs are positive, which
+ * lets 0 mark an empty slot. Not thread-safe; {@link Cart} guards access.
+ */
+public final class CartLines {
+
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int EMPTY = 0;
+
+    private int[] bookIds;
+    private int[] quantities;
+    private int[] unitPrices; // cents
+    private int size;
+
+    public CartLines() {
+        this.bookIds = new int[INITIAL_CAPACITY];
+        this.quantities = new int[INITIAL_CAPACITY];
+        this.unitPrices = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Get the quantity of a book
+     * @param bookId ID of the book
+     * @return Quantity, or 0 if the book is not in the cart
+     */
+    public int get(int bookId) {
+        int slot = find(bookId);
+        return slot >= 0 ? quantities[slot] : 0;
+    }
+
+    /**
+     * Get the unit price a book's line is priced at
+     * @param bookId ID of the book
+     * @return Unit price in cents, or 0 if the book is not in the cart
+     */
+    public int priceOf(int bookId) {
+        int slot = find(bookId);
+        return slot >= 0 ? unitPrices[slot] : 0;
+    }
+
+    public boolean contains(int bookId) {
+        return find(bookId) >= 0;
+    }
+
+    /**
+     * Set the quantity and unit price of a book, adding the line if needed
+     * @param bookId ID of the book, must be positive
+     * @param quantity Quantity of the book
+     * @param unitPriceCents Unit price in cents
+     */
+    public void put(int bookId, int quantity, int unitPriceCents) {
+        if (bookId <= 0) {
+            throw new IllegalArgumentException("Book ID must be positive: " + bookId);
+        }
+        int mask = bookIds.length - 1;
+        int slot = hash(bookId) & mask;
+        while (bookIds[slot] != EMPTY) {
+            if (bookIds[slot] == bookId) {
+                quantities[slot] = quantity;
+                unitPrices[slot] = unitPriceCents;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        bookIds[slot] = bookId;
+        quantities[slot] = quantity;
+        unitPrices[slot] = unitPriceCents;
+        if (++size * 4 > bookIds.length * 3) {
+            resize(bookIds.length * 2);
+        }
+    }
+
+    /**
+     * Remove a book's line
+     * @param bookId ID of the book
+     * @return Removed quantity, or 0 if the book was not in the cart
+     */
+    public int remove(int bookId) {
+        int slot = find(bookId);
+        if (slot < 0) {
+            return 0;
+        }
+        int removed = quantities[slot];
+        int mask = bookIds.length - 1;
+        // Shift later entries of the probe run back so lookups never stop early
+        int next = (slot + 1) & mask;
+        while (bookIds[next] != EMPTY) {
+            int home = hash(bookIds[next]) & mask;
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                bookIds[slot] = bookIds[next];
+                quantities[slot] = quantities[next];
+                unitPrices[slot] = unitPrices[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        bookIds[slot] = EMPTY;
+        quantities[slot] = 0;
+        unitPrices[slot] = 0;
+        size--;
+        return removed;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Number of slots, for iterating with {@link #bookIdAt(int)}, {@link #quantityAt(int)}
+     * and {@link #unitPriceAt(int)}
+     * @return Slot count
+     */
+    public int capacity() {
+        return bookIds.length;
+    }
+
+    /**
+     * @param slot Slot index
+     * @return Book ID in the slot, or 0 if the slot is empty
+     */
+    public int bookIdAt(int slot) {
+        return bookIds[slot];
+    }
+
+    public int quantityAt(int slot) {
+        return quantities[slot];
+    }
+
+    public int unitPriceAt(int slot) {
+        return unitPrices[slot];
+    }
+
+    private int find(int bookId) {
+        int mask = bookIds.length - 1;
+        int slot = hash(bookId) & mask;
+        while (bookIds[slot] != EMPTY) {
+            if (bookIds[slot] == bookId) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void resize(int capacity) {
+        int[] oldIds = bookIds;
+        int[] oldQuantities = quantities;
+        int[] oldPrices = unitPrices;
+        bookIds = new int[capacity];
+        quantities = new int[capacity];
+        unitPrices = new int[capacity];
+        size = 0;
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != EMPTY) {
+                put(oldIds[i], oldQuantities[i], oldPrices[i]);
+            }
+        }
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,309 @@
+package com.demo.bookstore.util;
+
+import com.demo.bookstore.model.ChangeEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
+import jakarta.ws.rs.sse.SseEventSink;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Feed of catalog change events served over Server-Sent Events. Events are numbered and
+ * kept in a fixed-size ring, so publishing never allocates beyond the event itself and
+ * never waits for a subscriber or takes a lock. An event's number is reserved inside the
+ * change it describes, so events follow the order of the changes, and the event is
+ * published once the change is made. Each event is serialized when it is first delivered,
+ * and the JSON is shared by every subscriber.
+ *
+ * A dispatcher thread hands subscribers with pending events to writer threads, one drain
+ * at a time per subscriber. Sending to a sink writes synchronously and blocks while the
+ * client's socket is full, so writers come from an unbounded pool: a stuck subscriber only
+ * ties up its own writer, and there are never more writers than subscribers. A subscriber that falls a full ring behind, or
+ * whose write is stuck for longer than {@code bookstore.events.stallMillis}, is
+ * disconnected; it can reconnect with {@code Last-Event-ID} and resume.
+ */
+public final class ChangeFeed {
+
+    public static final String CREATED = "created";
+    public static final String DELETED = "deleted";
+    public static final String PRICE = "price";
+    public static final String STOCK = "stock";
+    public static final Set<String> TYPES = Set.of(CREATED, DELETED, PRICE, STOCK);
+
+    private static final Logger LOGGER = Logger.getLogger(ChangeFeed.class.getName());
+    private static final int CAPACITY = Integer.highestOneBit(Math.max(16, Integer.getInteger("bookstore.events.bufferSize", 4096)) * 2 - 1);
+    private static final int MASK = CAPACITY - 1;
+    private static final long STALL_MILLIS = Long.getLong("bookstore.events.stallMillis", 5000);
+    private static final long KEEPALIVE_MILLIS = TimeUnit.SECONDS.toMillis(15);
+    private static final long DISPATCH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final String RESYNC_EVENT = "resync";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final AtomicReferenceArray<Entry> ring = new AtomicReferenceArray<>(CAPACITY);
+    private static final AtomicLong reserved = new AtomicLong();
+    private static final AtomicLong lastEventId = new AtomicLong(); // 0 until the first event
+    private static final Queue<Subscriber> subscribers = new ConcurrentLinkedQueue<>();
+    private static final ExecutorService writers = Executors.newCachedThreadPool(daemon("change-feed-writer"));
+    private static final ExecutorService closer = Executors.newSingleThreadExecutor(daemon("change-feed-closer"));
+    private static final Thread dispatcher = daemon("change-feed-dispatcher").newThread(ChangeFeed::dispatch);
+    private static final LongAdder published = Metrics.counter("events.published");
+    private static final LongAdder delivered = Metrics.counter("events.delivered");
+    private static final LongAdder disconnectedSlow = Metrics.counter("events.disconnected.slow");
+    static {
+        Metrics.gauge("events.subscribers", subscribers::size);
+        dispatcher.start();
+    }
+
+    private ChangeFeed() {
+    }
+
+    /**
+     * Create a change event and reserve its number. Called inside the change the event
+     * describes, as its last step, so numbers follow the order of the changes; the event must
+     * then be passed to {@link #publish} once the change is made.
+     * @param type Kind of change: created, deleted, price or stock
+     * @param entity Kind of entity that changed
+     * @param entityId ID of the entity that changed
+     * @param price New price, or null if not relevant to the change
+     * @param stock New stock level, or null if not relevant to the change
+     * @return Event to publish
+     */
+    public static ChangeEvent event(String type, String entity, int entityId, Double price, Integer stock) {
+        return new ChangeEvent(reserved.incrementAndGet(), type, entity, entityId, price, stock, System.currentTimeMillis());
+    }
+
+    /**
+     * Publish change events to every subscriber
+     * @param events Events created by {@link #event}, in the order they were created
+     */
+    public static void publish(List<ChangeEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        for (ChangeEvent event : events) {
+            // The slot still holds the event a full ring earlier until that one is published,
+            // and lastEventId cannot pass a gap, so wait for it rather than overwrite it
+            while (lastEventId.get() < event.getId() - CAPACITY) {
+                Thread.yield();
+            }
+            ring.set((int) (event.getId() & MASK), new Entry(event));
+            // Subscribers read up to lastEventId, so it only moves past filled slots. Whoever
+            // fills the next slot after a gap moves it on, including past earlier publishers' slots.
+            for (long head = lastEventId.get(); ; head = lastEventId.get()) {
+                Entry next = ring.get((int) ((head + 1) & MASK));
+                if (next == null || next.event.getId() != head + 1) {
+                    break;
+                }
+                lastEventId.compareAndSet(head, head + 1);
+            }
+        }
+        published.add(events.size());
+        LockSupport.unpark(dispatcher);
+    }
+
+    /**
+     * Start streaming events to a new subscriber
+     * @param sink Event sink of the subscriber's connection
+     * @param sse SSE context used to build events
+     * @param resumeAfter ID of the last event the subscriber saw, or null to receive only new events
+     * @param types Event types to deliver, or null for all
+     * @param entityIds Entity IDs to deliver events for, or null for all
+     */
+    public static void subscribe(SseEventSink sink, Sse sse, Long resumeAfter, Set<String> types, Set<Integer> entityIds) {
+        Subscriber subscriber = new Subscriber(sink, sse, types, entityIds);
+        long head = lastEventId.get();
+        if (resumeAfter == null) {
+            subscriber.cursor = head + 1;
+        } else if (resumeAfter > head || resumeAfter < head - CAPACITY) {
+            // The requested events are no longer retained; the client must refetch its state
+            subscriber.cursor = head + 1;
+            subscriber.resync = true;
+        } else {
+            subscriber.cursor = resumeAfter + 1;
+        }
+        subscribers.add(subscriber);
+        LockSupport.unpark(dispatcher);
+    }
+
+    /**
+     * Forget every event and number the next one 1 again, e.g. after a warm-up run. Only
+     * call it while nothing is publishing and no one is subscribed.
+     */
+    public static void reset() {
+        for (int i = 0; i < CAPACITY; i++) {
+            ring.set(i, null);
+        }
+        reserved.set(0);
+        lastEventId.set(0);
+    }
+
+    public static long getLastEventId() {
+        return lastEventId.get();
+    }
+
+    private static void dispatch() {
+        while (true) {
+            LockSupport.parkNanos(DISPATCH_INTERVAL_NANOS);
+            long now = System.currentTimeMillis();
+            long head = lastEventId.get();
+            for (Iterator<Subscriber> it = subscribers.iterator(); it.hasNext(); ) {
+                Subscriber subscriber = it.next();
+                if (subscriber.closed || subscriber.sink.isClosed()) {
+                    it.remove();
+                } else if (subscriber.draining) {
+                    long started = subscriber.drainStarted;
+                    if (started != 0 && now - started > STALL_MILLIS) {
+                        it.remove();
+                        disconnect(subscriber, "write stalled");
+                    }
+                } else if (subscriber.cursor <= head || subscriber.resync || now - subscriber.lastSent >= KEEPALIVE_MILLIS) {
+                    subscriber.drainStarted = 0;
+                    subscriber.draining = true;
+                    writers.execute(() -> drain(subscriber));
+                }
+            }
+        }
+    }
+
+    private static void drain(Subscriber subscriber) {
+        // Time spent queued for a writer is not the subscriber's fault, so the stall clock starts here
+        subscriber.drainStarted = System.currentTimeMillis();
+        try {
+            if (subscriber.resync) {
+                send(subscriber, subscriber.sse.newEventBuilder()
+                        .id(Long.toString(subscriber.cursor - 1))
+                        .name(RESYNC_EVENT)
+                        .data(String.class, "{}")
+                        .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                        .build());
+                subscriber.resync = false;
+            }
+            long head = lastEventId.get();
+            while (subscriber.cursor <= head) {
+                Entry entry = ring.get((int) (subscriber.cursor & MASK));
+                if (entry == null || entry.event.getId() != subscriber.cursor) {
+                    disconnect(subscriber, "fell behind the retained events");
+                    return;
+                }
+                if (subscriber.accepts(entry.event)) {
+                    send(subscriber, subscriber.sse.newEventBuilder()
+                            .id(Long.toString(entry.event.getId()))
+                            .name(entry.event.getType())
+                            .data(String.class, entry.json())
+                            .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                            .build());
+                    delivered.increment();
+                }
+                subscriber.cursor++;
+            }
+            if (System.currentTimeMillis() - subscriber.lastSent >= KEEPALIVE_MILLIS) {
+                send(subscriber, subscriber.sse.newEventBuilder().comment("keepalive").build());
+            }
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.FINE, "Event subscriber disconnected", e);
+            subscriber.closed = true;
+            closer.execute(() -> close(subscriber));
+        } finally {
+            subscriber.draining = false;
+        }
+    }
+
+    private static void send(Subscriber subscriber, OutboundSseEvent event) {
+        subscriber.sink.send(event).toCompletableFuture().join();
+        subscriber.lastSent = System.currentTimeMillis();
+    }
+
+    private static void disconnect(Subscriber subscriber, String reason) {
+        LOGGER.warning("Disconnecting slow event subscriber: " + reason);
+        disconnectedSlow.increment();
+        subscriber.closed = true;
+        // Closing may wait for the stuck write, so it never runs on the dispatcher
+        closer.execute(() -> close(subscriber));
+    }
+
+    private static void close(Subscriber subscriber) {
+        try {
+            subscriber.sink.close();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.FINE, "Failed to close event sink", e);
+        }
+    }
+
+    private static String toJson(ChangeEvent event) {
+        try {
+            return MAPPER.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize change event", e);
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Entry {
+        private final ChangeEvent event;
+        private volatile String json;
+
+        private Entry(ChangeEvent event) {
+            this.event = event;
+        }
+
+        // Racing writers may both serialize the event; either result is the same
+        private String json() {
+            String result = json;
+            if (result == null) {
+                result = toJson(event);
+                json = result;
+            }
+            return result;
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEventSink sink;
+        private final Sse sse;
+        private final Set<String> types;
+        private final Set<Integer> entityIds;
+        private volatile long cursor;
+        private volatile boolean resync;
+        private volatile boolean draining;
+        private volatile boolean closed;
+        private volatile long drainStarted;
+        private volatile long lastSent = System.currentTimeMillis();
+
+        private Subscriber(SseEventSink sink, Sse sse, Set<String> types, Set<Integer> entityIds) {
+            this.sink = sink;
+            this.sse = sse;
+            this.types = types;
+            this.entityIds = entityIds;
+        }
+
+        private boolean accepts(ChangeEvent event) {
+            return (types == null || types.contains(event.getType()))
+                    && (entityIds == null || entityIds.contains(event.getEntityId()));
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.demo.bookstore.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Versioned log of which entities changed, for delta sync. Every change gets the next
+ * version number; the most recent changes are kept in a fixed-size ring of primitive
+ * arrays, so retention is bounded and recording never allocates. Neither recording nor
+ * reading takes a lock. A version is reserved inside the change it numbers and published
+ * once the change is visible, so a reader never sees a version before its change; readers
+ * only scan up to the published version. A reader checks each slot's version around reading
+ * its entity, so a slot overwritten mid-scan is detected rather than misread.
+ */
+public final class ChangeLog {
+
+    private final AtomicLongArray versions;
+    private final AtomicIntegerArray entityIds;
+    private final AtomicLong reserved = new AtomicLong();
+    private final AtomicLong version = new AtomicLong(); // latest published version, 0 before the first
+
+    /**
+     * @param retention Number of most recent changes kept
+     */
+    public ChangeLog(int retention) {
+        this.versions = new AtomicLongArray(Math.max(1, retention));
+        this.entityIds = new AtomicIntegerArray(versions.length());
+    }
+
+    /**
+     * Reserve the version of a change. Called inside the change, as its last step, so
+     * versions follow the order of the changes; the version must then be passed to
+     * {@link #publish} once the change is visible to readers.
+     * @return Version assigned to the change
+     */
+    public long reserve() {
+        return reserved.incrementAndGet();
+    }
+
+    /**
+     * Make a reserved change readable
+     * @param changeVersion Version returned by {@link #reserve}
+     * @param entityId ID of the entity that was created, updated or deleted
+     */
+    public void publish(long changeVersion, int entityId) {
+        int slot = (int) (changeVersion % versions.length());
+        // The slot still holds the change a full ring earlier until that one is published, and
+        // the published version cannot pass a gap, so wait for it rather than overwrite it
+        while (version.get() < changeVersion - versions.length()) {
+            Thread.yield();
+        }
+        // Invalidate the slot first, so a reader cannot pair its old version with the new entity
+        versions.set(slot, 0);
+        entityIds.set(slot, entityId);
+        versions.set(slot, changeVersion);
+        // Readers scan up to the published version, so it only moves past filled slots. Whoever
+        // fills the next slot after a gap moves it on, including past earlier publishers' slots.
+        for (long head = version.get(); ; head = version.get()) {
+            if (versions.get((int) ((head + 1) % versions.length())) != head + 1) {
+                break;
+            }
+            version.compareAndSet(head, head + 1);
+        }
+    }
+
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Forget every change and start again from version 0. Only call it while nothing is
+     * recording.
+     */
+    public void clear() {
+        for (int slot = 0; slot < versions.length(); slot++) {
+            versions.set(slot, 0);
+        }
+        reserved.set(0);
+        version.set(0);
+    }
+
+    /**
+     * Find the entities changed after a version, each listed once at its latest change
+     * @param since Version the caller is up to date with
+     * @param limit Maximum number of entities to return
+     * @return Changes in version order, or null if changes after {@code since} are no longer retained
+     */
+    public Changes since(long since, int limit) {
+        long head = version.get();
+        if (since < 0 || since > head || since < head - versions.length()) {
+            return null;
+        }
+        Map<Integer, Long> latest = new LinkedHashMap<>();
+        long upTo = since;
+        for (long v = since + 1; v <= head; v++) {
+            int slot = (int) (v % versions.length());
+            if (versions.get(slot) != v) {
+                return null; // overwritten by newer changes while scanning
+            }
+            int entityId = entityIds.get(slot);
+            if (versions.get(slot) != v) {
+                return null;
+            }
+            if (latest.size() == limit && !latest.containsKey(entityId)) {
+                break;
+            }
+            // Re-insert so each entity sits at its latest change
+            latest.remove(entityId);
+            latest.put(entityId, v);
+            upTo = v;
+        }
+        return new Changes(latest, upTo, upTo < head);
+    }
+
+    /**
+     * Entities changed within a range of versions
+     */
+    public static final class Changes {
+        private final Map<Integer, Long> latest;
+        private final long version;
+        private final boolean hasMore;
+
+        private Changes(Map<Integer, Long> latest, long version, boolean hasMore) {
+            this.latest = latest;
+            this.version = version;
+            this.hasMore = hasMore;
+        }
+
+        /**
+         * @return Version of each changed entity's latest change, by entity ID in version order
+         */
+        public Map<Integer, Long> getLatest() {
+            return latest;
+        }
+
+        /**
+         * @return Version the caller is up to date with after applying these changes
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        public boolean hasMore() {
+            return hasMore;
+        }
+    }
+}
@@ -0,0 +1,460 @@
+package com.demo.bookstore.util;
+
+import com.demo.bookstore.exception.InvalidInputException;
+import com.demo.bookstore.model.ClusterMember;
+import com.demo.bookstore.model.ClusterView;
+import com.demo.bookstore.model.Customer;
+import com.demo.bookstore.model.CustomerHandoff;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Cluster mode, in which each node owns the customers that a {@link HashRing} of the member
+ * nodes assigns to it, together with their carts and orders. Requests for another node's
+ * customer are forwarded to it over HTTP. When nodes join or leave, every node hands the
+ * customers it no longer owns to their new owners. Customer and order IDs are strided by
+ * node ID, so nodes never allocate the same ID.
+ * <p>
+ * A node keeps serving the customers it holds until their new owner acknowledges the
+ * handoff, and a new owner passes requests for customers it has not received yet back to
+ * their owner under the previous membership. While a batch of customers is being sent,
+ * their requests are refused with a retry hint, and the batch is only exported once the
+ * requests already running for them have finished, so no write is lost. Failed handoffs are
+ * retried with growing delays.
+ */
+public final class Cluster {
+
+    private static final Logger LOGGER = Logger.getLogger(Cluster.class.getName());
+
+    public static final String FORWARDED_HEADER = "X-BookStore-Forwarded";
+    public static final int MAX_NODES = 64;
+
+    private static final String NODES = System.getProperty("bookstore.cluster.nodes");
+    private static final String JOIN = System.getProperty("bookstore.cluster.join");
+    private static final boolean ENABLED = NODES != null || JOIN != null;
+    private static final String SELF = normalize(System.getProperty("bookstore.cluster.self",
+            "http://localhost:" + Integer.getInteger("bookstore.port", 8080) + "/api/"));
+    private static final Duration TIMEOUT = Duration.ofMillis(Long.getLong("bookstore.cluster.timeoutMillis", 5000));
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    // Keeps a pool of keep-alive connections to each node; not built outside cluster mode,
+    // where it would only slow down startup
+    private static final HttpClient client = !ENABLED ? null : HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(TIMEOUT)
+            .build();
+    private static final ScheduledExecutorService handoffExecutor = !ENABLED ? null : Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "cluster-handoff");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final LongAdder forwarded = Metrics.counter("cluster.forwarded");
+    private static final LongAdder handedOff = Metrics.counter("cluster.customersHandedOff");
+    private static final LongAdder received = Metrics.counter("cluster.customersReceived");
+    private static final LongAdder handoffFailures = Metrics.counter("cluster.handoffFailures");
+
+    private static final int HANDOFF_BATCH = 100;
+    private static final long RETRY_MIN_MILLIS = 1000;
+    private static final long RETRY_MAX_MILLIS = 60000;
+    // Customers being handed off, and the number of requests running for each customer served here
+    private static final Set<Integer> moving = ConcurrentHashMap.newKeySet();
+    private static final Map<Integer, Integer> inFlight = new ConcurrentHashMap<>();
+    // Only touched on the handoff thread
+    private static long retryMillis = RETRY_MIN_MILLIS;
+    private static boolean retryScheduled;
+
+    private static final int NODE_ID;
+    private static volatile ClusterView view;
+    private static volatile HashRing ring;
+    private static volatile HashRing previousRing; // null until the membership first changes
+    // Until then this node's membership only lists itself, so it cannot route customers
+    private static volatile boolean joining = JOIN != null;
+
+    static {
+        List<String> members = new ArrayList<>();
+        if (NODES != null) {
+            for (String node : NODES.split(",")) {
+                if (!node.isBlank()) {
+                    members.add(normalize(node.trim()));
+                }
+            }
+        } else {
+            members.add(SELF); // until the join completes
+        }
+        NODE_ID = Integer.getInteger("bookstore.cluster.nodeId", Math.max(0, members.indexOf(SELF)));
+        if (ENABLED) {
+            if (!members.contains(SELF)) {
+                throw new IllegalArgumentException("bookstore.cluster.nodes must include this node, " + SELF);
+            }
+            if (NODES == null && Integer.getInteger("bookstore.cluster.nodeId") == null) {
+                throw new IllegalArgumentException("bookstore.cluster.join requires bookstore.cluster.nodeId");
+            }
+            if (NODE_ID < 0 || NODE_ID >= MAX_NODES) {
+                throw new IllegalArgumentException("bookstore.cluster.nodeId must be between 0 and " + (MAX_NODES - 1));
+            }
+            ClusterView initial = new ClusterView();
+            initial.setSelf(SELF);
+            initial.setMembers(members);
+            setView(initial, null);
+            Metrics.gauge("cluster.members", () -> view.getMembers().size());
+        }
+    }
+
+    private Cluster() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * @return True while this node is starting and has not joined the cluster named by
+     *         {@code bookstore.cluster.join} yet
+     */
+    public static boolean isJoining() {
+        return joining;
+    }
+
+    /**
+     * @param customerId ID of a customer
+     * @return True if this node owns the customer, which is always the case outside cluster mode
+     */
+    public static boolean owns(int customerId) {
+        return !ENABLED || ring.ownerOf(customerId).equals(SELF);
+    }
+
+    /**
+     * @param customerId ID of a customer
+     * @return Base URL of the node owning the customer
+     */
+    public static String ownerOf(int customerId) {
+        return ENABLED ? ring.ownerOf(customerId) : SELF;
+    }
+
+    /**
+     * @param customerId ID of a customer
+     * @return Base URL of the node that owned the customer before the last membership change
+     */
+    public static String previousOwnerOf(int customerId) {
+        HashRing before = previousRing;
+        return before != null ? before.ownerOf(customerId) : ownerOf(customerId);
+    }
+
+    /**
+     * @param url Base URL of a node
+     * @return True if it is this node
+     */
+    public static boolean isSelf(String url) {
+        return SELF.equals(url);
+    }
+
+    /**
+     * @param customerId ID of a customer
+     * @return True if the customer's data is on this node, whether or not it owns them
+     */
+    public static boolean holds(int customerId) {
+        return DataStore.getCustomerById(customerId) != null;
+    }
+
+    /**
+     * Register a request for a customer served by this node; pair with {@link #exit}
+     * @param customerId ID of the customer
+     * @return False if the customer is being handed off, in which case the request must be refused
+     */
+    public static boolean enter(int customerId) {
+        inFlight.merge(customerId, 1, Integer::sum);
+        // The handoff marks the customer before waiting for requests, so one of the two sees the other
+        if (moving.contains(customerId)) {
+            exit(customerId);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Register the end of a request admitted by {@link #enter}
+     * @param customerId ID of the customer
+     */
+    public static void exit(int customerId) {
+        inFlight.computeIfPresent(customerId, (id, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * Turn the n-th ID a node allocates into one no other node allocates
+     * @param sequence Node-local sequence number, from 1
+     * @return Cluster-wide unique ID; the sequence itself outside cluster mode
+     */
+    static int stridedId(int sequence) {
+        return ENABLED ? (sequence - 1) * MAX_NODES + NODE_ID + 1 : sequence;
+    }
+
+    public static ClusterView getView() {
+        if (!ENABLED) {
+            throw new InvalidInputException("This server is not running in cluster mode");
+        }
+        return view;
+    }
+
+    /**
+     * Forward a request to the node that owns its customer
+     * @param owner Base URL of the owning node
+     * @param path Request path relative to the base URL, with its query string
+     * @param method HTTP method
+     * @param headers Request headers to pass on
+     * @param body Request body, empty if none
+     * @return Owner's response
+     */
+    public static HttpResponse<byte[]> forward(String owner, String path, String method,
+            Map<String, List<String>> headers, byte[] body) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(owner + path))
+                .timeout(TIMEOUT)
+                .method(method, body.length == 0 ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(body))
+                .header(FORWARDED_HEADER, SELF);
+        headers.forEach((name, values) -> values.forEach(value -> request.header(name, value)));
+        forwarded.increment();
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    /**
+     * Join the cluster named by {@code bookstore.cluster.join}, if set
+     */
+    public static void joinFromSystemProperties() {
+        if (JOIN == null) {
+            return;
+        }
+        ClusterMember member = new ClusterMember();
+        member.setUrl(SELF);
+        try {
+            ClusterView joined = send(normalize(JOIN) + "cluster/members", "POST", member, ClusterView.class);
+            apply(joined);
+            joining = false;
+            LOGGER.info("Joined cluster of " + joined.getMembers() + " through " + JOIN);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to join cluster through " + JOIN, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while joining cluster", e);
+        }
+    }
+
+    /**
+     * Add a node to the cluster and tell every member, including the new one
+     * @param url Base URL of the joining node
+     * @return New membership
+     */
+    public static synchronized ClusterView addMember(String url) {
+        String node = normalize(url);
+        Set<String> members = new LinkedHashSet<>(getView().getMembers());
+        if (!members.add(node)) {
+            return view;
+        }
+        return changeMembership(members);
+    }
+
+    /**
+     * Take this node out of the cluster, handing all its customers to the remaining members
+     * @return New membership
+     */
+    public static synchronized ClusterView leave() {
+        Set<String> members = new LinkedHashSet<>(getView().getMembers());
+        members.remove(SELF);
+        if (members.isEmpty()) {
+            throw new InvalidInputException("The last node of the cluster cannot leave");
+        }
+        return changeMembership(members);
+    }
+
+    private static ClusterView changeMembership(Set<String> members) {
+        ClusterView next = new ClusterView();
+        next.setSelf(SELF);
+        next.setVersion(view.getVersion() + 1);
+        next.setMembers(new ArrayList<>(members));
+        Set<String> notify = new LinkedHashSet<>(view.getMembers());
+        notify.addAll(members);
+        notify.remove(SELF);
+        for (String node : notify) {
+            try {
+                send(node + "cluster", "PUT", next, ClusterView.class);
+            } catch (IOException e) {
+                LOGGER.warning("Failed to tell " + node + " about membership version " + next.getVersion() + ": " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        apply(next);
+        return view;
+    }
+
+    /**
+     * Adopt a membership announced by another node, if it is newer than the current one
+     * @param announced Membership to adopt
+     * @return Current membership
+     */
+    public static synchronized ClusterView apply(ClusterView announced) {
+        ClusterView current = getView();
+        if (announced.getVersion() <= current.getVersion() || announced.getMembers().isEmpty()) {
+            return current;
+        }
+        ClusterView next = new ClusterView();
+        next.setSelf(SELF);
+        next.setVersion(announced.getVersion());
+        List<String> members = new ArrayList<>();
+        for (String member : announced.getMembers()) {
+            members.add(normalize(member));
+        }
+        next.setMembers(members);
+        // A joining node's membership only lists itself; the previous owners are the other members
+        List<String> previous = new ArrayList<>(joining ? members : current.getMembers());
+        if (joining) {
+            previous.remove(SELF);
+        }
+        setView(next, previous.isEmpty() ? null : previous);
+        LOGGER.info("Cluster membership version " + next.getVersion() + ": " + members);
+        handoffExecutor.execute(Cluster::handOff);
+        return next;
+    }
+
+    /**
+     * Take over customers handed off by another node
+     * @param handoffs Customers with their carts and orders
+     */
+    public static void receive(List<CustomerHandoff> handoffs) {
+        int count = 0;
+        for (CustomerHandoff handoff : handoffs) {
+            if (handoff.getCustomer() == null) {
+                LOGGER.warning("Skipped a handoff without a customer");
+                continue;
+            }
+            DataStore.importCustomer(handoff);
+            count++;
+        }
+        received.add(count);
+        LOGGER.info("Received " + count + " customers");
+    }
+
+    private static void setView(ClusterView next, List<String> previousMembers) {
+        previousRing = previousMembers != null ? new HashRing(previousMembers) : null;
+        ring = new HashRing(next.getMembers());
+        view = next;
+    }
+
+    private static void handOff() {
+        Map<String, List<Integer>> byOwner = new HashMap<>();
+        for (Customer customer : DataStore.getAllCustomers()) {
+            String owner = ownerOf(customer.getId());
+            if (!owner.equals(SELF)) {
+                byOwner.computeIfAbsent(owner, k -> new ArrayList<>()).add(customer.getId());
+            }
+        }
+        boolean complete = true;
+        for (Map.Entry<String, List<Integer>> leaving : byOwner.entrySet()) {
+            List<Integer> ids = leaving.getValue();
+            // In batches, so each customer is unavailable only while their own batch is sent
+            for (int from = 0; from < ids.size(); from += HANDOFF_BATCH) {
+                try {
+                    complete &= handOff(leaving.getKey(), ids.subList(from, Math.min(ids.size(), from + HANDOFF_BATCH)));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        if (complete) {
+            retryMillis = RETRY_MIN_MILLIS;
+        } else if (!retryScheduled) {
+            LOGGER.info("Retrying customer handoff in " + retryMillis + " ms");
+            retryScheduled = true;
+            handoffExecutor.schedule(() -> {
+                retryScheduled = false;
+                handOff();
+            }, retryMillis, TimeUnit.MILLISECONDS);
+            retryMillis = Math.min(retryMillis * 2, RETRY_MAX_MILLIS);
+        }
+    }
+
+    /**
+     * Hand one batch of customers to their new owner
+     * @return True if every customer of the batch was handed off or no longer exists
+     */
+    private static boolean handOff(String owner, List<Integer> ids) throws InterruptedException {
+        moving.addAll(ids);
+        try {
+            boolean complete = true;
+            List<CustomerHandoff> handoffs = new ArrayList<>(ids.size());
+            long deadline = System.nanoTime() + TIMEOUT.toNanos();
+            for (int id : ids) {
+                while (inFlight.containsKey(id) && System.nanoTime() - deadline < 0) {
+                    Thread.sleep(1);
+                }
+                if (inFlight.containsKey(id)) {
+                    LOGGER.warning("Customer " + id + " still has requests running; handing them off later");
+                    complete = false;
+                    continue;
+                }
+                CustomerHandoff handoff = DataStore.exportCustomer(id);
+                if (handoff != null) { // null if deleted meanwhile
+                    handoffs.add(handoff);
+                }
+            }
+            if (handoffs.isEmpty()) {
+                return complete;
+            }
+            try {
+                send(owner + "cluster/handoff", "POST", handoffs, null);
+            } catch (IOException e) {
+                // Kept and served here until a retry succeeds
+                handoffFailures.increment();
+                LOGGER.warning("Failed to hand off " + handoffs.size() + " customers to " + owner + ": " + e.getMessage());
+                return false;
+            }
+            for (CustomerHandoff handoff : handoffs) {
+                DataStore.releaseHandedOffCustomer(handoff.getCustomer().getId());
+            }
+            handedOff.add(handoffs.size());
+            LOGGER.info("Handed off " + handoffs.size() + " customers to " + owner);
+            return complete;
+        } finally {
+            moving.removeAll(ids);
+        }
+    }
+
+    private static <T> T send(String url, String method, Object body, Class<T> responseType)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(TIMEOUT)
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofByteArray(MAPPER.writeValueAsBytes(body)))
+                .build();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() >= 300) {
+            throw new IOException(method + " " + url + " returned " + response.statusCode());
+        }
+        return responseType != null ? MAPPER.readValue(response.body(), responseType) : null;
+    }
+
+    private static String normalize(String url) {
+        return url.endsWith("/") ? url : url + "/";
+    }
+}
@@ -0,0 +1,185 @@
+package com.demo.bookstore.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * How often books are bought together, fed by order placement, for "customers who bought
+ * this also bought" lists. Checkout only queues the order's book IDs; a single aggregator
+ * thread counts every pair of books in it.
+ * <p>
+ * Each book's row of the co-occurrence matrix is a fixed number of slots, each packing a
+ * count and the ID of the other book into one long, kept with the Space-Saving algorithm: a
+ * book not yet in a full row replaces the one with the lowest count and takes over that
+ * count plus one. Popular pairings therefore stay in the row, counts are at most the lowest
+ * count in the row too high, and memory is bounded by the number of books times the row
+ * size however many distinct pairs are bought. Rows are kept in a map by book ID, so large
+ * IDs cost no more than small ones.
+ */
+public final class CoPurchases {
+
+    private static final Logger LOGGER = Logger.getLogger(CoPurchases.class.getName());
+
+    public static final int MAX_RELATED = Integer.getInteger("bookstore.related.size", 10);
+    // Twice the slots that are served, so the served ones are reliably the most frequent
+    private static final int SLOTS = 2 * MAX_RELATED;
+    // Pairs grow with the square of an order's books; larger orders only count their first ones
+    private static final int MAX_BOOKS_PER_ORDER = 20;
+    private static final long ONE = 1L << 32;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private static final ConcurrentLinkedQueue<Purchase> pending = new ConcurrentLinkedQueue<>();
+    // Only the aggregator thread writes
+    private static final Map<Integer, AtomicLongArray> rows = new ConcurrentHashMap<>();
+
+    static {
+        Thread aggregator = new Thread(CoPurchases::runAggregator, "co-purchases");
+        aggregator.setDaemon(true);
+        aggregator.start();
+    }
+
+    private CoPurchases() {
+    }
+
+    /**
+     * Queue the books of a placed order for counting
+     * @param bookIds IDs of the books of the order's line items
+     */
+    public static void recordOrder(int[] bookIds) {
+        int[] distinct = new int[Math.min(bookIds.length, MAX_BOOKS_PER_ORDER)];
+        int count = 0;
+        for (int i = 0; i < bookIds.length && count < distinct.length; i++) {
+            boolean seen = false;
+            for (int j = 0; j < count && !seen; j++) {
+                seen = distinct[j] == bookIds[i];
+            }
+            if (!seen) {
+                distinct[count++] = bookIds[i];
+            }
+        }
+        if (count > 1) {
+            pending.offer(new Purchase(Arrays.copyOf(distinct, count), null));
+        }
+    }
+
+    /**
+     * Forget every purchase counted so far, e.g. those of a warm-up run. Waits until the
+     * aggregator has dropped them.
+     */
+    public static void reset() {
+        Purchase marker = new Purchase(new int[0], new CountDownLatch(1));
+        pending.offer(marker);
+        try {
+            if (!marker.resetDone.await(10, TimeUnit.SECONDS)) {
+                LOGGER.warning("Timed out waiting for co-purchase counts to reset");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Books most often bought together with a book, most frequent first
+     * @param bookId ID of the book
+     * @return Packed slots, each {@code count << 32 | otherBookId}; use {@link #bookIdOf} and
+     *         {@link #countOf} to read them
+     */
+    public static long[] related(int bookId) {
+        AtomicLongArray row = rows.get(bookId);
+        if (row == null) {
+            return new long[0];
+        }
+        long[] slots = new long[SLOTS];
+        int used = 0;
+        while (used < SLOTS && (slots[used] = row.get(used)) != 0) {
+            used++;
+        }
+        Arrays.sort(slots, 0, used);
+        long[] result = new long[used];
+        for (int i = 0; i < used; i++) {
+            result[i] = slots[used - 1 - i];
+        }
+        return result;
+    }
+
+    public static int bookIdOf(long slot) {
+        return (int) slot;
+    }
+
+    public static long countOf(long slot) {
+        return slot >>> 32;
+    }
+
+    private static void runAggregator() {
+        while (true) {
+            try {
+                Purchase purchase;
+                while ((purchase = pending.poll()) != null) {
+                    if (purchase.resetDone != null) {
+                        rows.clear();
+                        purchase.resetDone.countDown();
+                        continue;
+                    }
+                    int[] books = purchase.bookIds;
+                    for (int i = 0; i < books.length; i++) {
+                        for (int j = 0; j < books.length; j++) {
+                            if (i != j) {
+                                count(books[i], books[j]);
+                            }
+                        }
+                    }
+                }
+            } catch (RuntimeException | Error e) {
+                // Skip the order rather than end counting until the next restart
+                LOGGER.log(Level.WARNING, "Co-purchase counting failed", e);
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    // Count one more purchase of other together with book in book's row
+    private static void count(int book, int other) {
+        if (book <= 0 || other <= 0) {
+            return;
+        }
+        AtomicLongArray row = rows.computeIfAbsent(book, id -> new AtomicLongArray(SLOTS));
+        int lowest = 0;
+        for (int i = 0; i < SLOTS; i++) {
+            long slot = row.get(i);
+            if (slot == 0) {
+                // Slots fill from the front, so the rest are free too
+                row.lazySet(i, ONE | other);
+                return;
+            }
+            if (bookIdOf(slot) == other) {
+                row.lazySet(i, slot + ONE);
+                return;
+            }
+            if (countOf(slot) < countOf(row.get(lowest))) {
+                lowest = i;
+            }
+        }
+        row.lazySet(lowest, (row.get(lowest) & ~0xFFFFFFFFL) + ONE | other);
+    }
+
+    /**
+     * The distinct books of one placed order, or a marker asking the aggregator to reset
+     */
+    private static final class Purchase {
+        final int[] bookIds;
+        final CountDownLatch resetDone; // null unless this is a reset marker
+
+        Purchase(int[] bookIds, CountDownLatch resetDone) {
+            this.bookIds = bookIds;
+            this.resetDone = resetDone;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.demo.bookstore.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free cap on the number of requests in flight. Part of the capacity is reserved
+ * for priority requests, so ordinary requests are refused first when the server is busy.
+ */
+public final class ConcurrencyLimiter {
+
+    private final int limit;
+    private final int ordinaryLimit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * @param limit Maximum number of requests in flight
+     * @param reserved Part of the limit only priority requests may use
+     */
+    public ConcurrencyLimiter(int limit, int reserved) {
+        this.limit = Math.max(1, limit);
+        this.ordinaryLimit = Math.max(0, this.limit - Math.max(0, reserved));
+    }
+
+    /**
+     * Try to take a slot for a request
+     * @param priority Whether the request may use the reserved capacity
+     * @return True if the request was admitted and must later call {@link #release()}
+     */
+    public boolean tryAcquire(boolean priority) {
+        int cap = priority ? limit : ordinaryLimit;
+        while (true) {
+            int current = inFlight.get();
+            if (current >= cap) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+}
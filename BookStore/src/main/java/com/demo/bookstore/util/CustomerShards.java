@@ -0,0 +1,121 @@
+package com.demo.bookstore.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Customer state partitioned into shards by customer ID. Each shard is owned by one
+ * thread that runs the commands queued in its mailbox in order, so a shard's state is
+ * only ever touched by its own thread and needs no locking, and the commands of one
+ * customer never run concurrently.
+ */
+public final class CustomerShards {
+
+    private final Shard[] shards;
+
+    /**
+     * @param count Number of shards, each with its own thread
+     */
+    public CustomerShards(int count) {
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            shards[i] = new Shard(i);
+        }
+        Metrics.gauge("shards.queued", () -> {
+            long queued = 0;
+            for (Shard shard : shards) {
+                queued += shard.mailbox.getQueue().size();
+            }
+            return queued;
+        });
+    }
+
+    /**
+     * Create the shards configured by {@code bookstore.shards}
+     * @return Shards, or null if sharding is off (the default)
+     */
+    public static CustomerShards fromSystemProperties() {
+        int count = Integer.getInteger("bookstore.shards", 0);
+        return count > 0 ? new CustomerShards(count) : null;
+    }
+
+    /**
+     * Run a command on the customer's shard and wait for its result. Runs it directly
+     * when already on that shard's thread.
+     * @param customerId ID of the customer the command is for
+     * @param command Command to run
+     * @return Result of the command
+     */
+    public <T> T call(int customerId, Supplier<T> command) {
+        Shard shard = shardOf(customerId);
+        if (Thread.currentThread() == shard.thread) {
+            return command.get();
+        }
+        try {
+            return CompletableFuture.supplyAsync(command, shard.mailbox).join();
+        } catch (CompletionException e) {
+            // Surface the command's own exception, e.g. OutOfStockException
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Queue a command on the customer's shard without waiting for it
+     * @param customerId ID of the customer the command is for
+     * @param command Command to run
+     */
+    public void execute(int customerId, Runnable command) {
+        shardOf(customerId).mailbox.execute(command);
+    }
+
+    /**
+     * @param customerId ID of a customer
+     * @return Carts of the customer's shard; only to be used on that shard's thread
+     */
+    Map<Integer, Cart> carts(int customerId) {
+        return shardOf(customerId).carts;
+    }
+
+    /**
+     * @return Number of live carts across all shards, read without coordination
+     */
+    int cartCount() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.carts.size();
+        }
+        return count;
+    }
+
+    private Shard shardOf(int customerId) {
+        return shards[Math.floorMod(customerId, shards.length)];
+    }
+
+    private static final class Shard {
+        private final Map<Integer, Cart> carts = new HashMap<>(); // customerId -> Cart
+        private final ThreadPoolExecutor mailbox;
+        private volatile Thread thread;
+
+        private Shard(int index) {
+            this.mailbox = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread owner = new Thread(r, "customer-shard-" + index);
+                owner.setDaemon(true);
+                thread = owner;
+                return owner;
+            });
+            mailbox.prestartCoreThread();
+        }
+    }
+}
@@ -2,32 +2,74 @@ package com.demo.bookstore.util;
 
 import com.demo.bookstore.model.Author;
 import com.demo.bookstore.model.Book;
+import com.demo.bookstore.model.BookChange;
+import com.demo.bookstore.model.BookChanges;
+import com.demo.bookstore.model.BookFacets;
+import com.demo.bookstore.model.ChangeEvent;
 import com.demo.bookstore.model.CartItem;
 import com.demo.bookstore.model.Customer;
+import com.demo.bookstore.model.CustomerHandoff;
+import com.demo.bookstore.model.LookupResult;
 import com.demo.bookstore.model.Order;
+import com.demo.bookstore.model.PricedCart;
+import com.demo.bookstore.model.PricedCartLine;
+import com.demo.bookstore.model.ReplicationMessage;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
  * In-memory data storage for all entities in the BookStore
  */
 public class DataStore {
-    private static final Map<Integer, Book> books = new HashMap<>();
-    private static final Map<Integer, Author> authors = new HashMap<>();
-    private static final Map<Integer, Customer> customers = new HashMap<>();
-    private static final Map<Integer, Map<Integer, CartItem>> carts = new HashMap<>(); // customerId -> Map<bookId, CartItem>
-    private static final Map<Integer, Order> orders = new HashMap<>();
-    private static final Map<Integer, List<Order>> customerOrders = new HashMap<>(); // customerId -> List<Order>
+    private static final String BOOK_ENTITY = "book";
+    private static final ChangeLog bookChanges = new ChangeLog(Integer.getInteger("bookstore.changes.retention", 10000));
+    private static final Map<Integer, Book> books = new ConcurrentHashMap<>();
+    private static final SortedIndex booksByPrice = new SortedIndex();
+    private static final SortedIndex booksByYear = new SortedIndex();
+    private static final FacetIndex bookFacets = new FacetIndex();
+    private static final Map<Integer, Author> authors = new ConcurrentHashMap<>();
+    private static final Map<Integer, Customer> customers = new ConcurrentHashMap<>();
+    private static final Map<Integer, Cart> carts = new ConcurrentHashMap<>(); // customerId -> Cart, unless sharded
+    private static final CustomerShards customerShards = CustomerShards.fromSystemProperties();
+    private static final Map<Integer, Set<Integer>> cartsByBook = new ConcurrentHashMap<>(); // bookId -> customerIds holding it
+    private static final OrderHistoryStore orderHistory = OrderHistoryStore.fromSystemProperties();
+    private static final ReplicationLog replicationLog = ReplicationServer.logFromSystemProperties();
     
     private static final AtomicInteger bookIdCounter = new AtomicInteger(1);
     private static final AtomicInteger authorIdCounter = new AtomicInteger(1);
     private static final AtomicInteger customerIdCounter = new AtomicInteger(1);
     private static final AtomicInteger orderIdCounter = new AtomicInteger(1);
     
+    // Idle carts are evicted by a timer wheel ticking once a second
+    private static final long CART_TTL_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong("bookstore.cart.ttlSeconds", 1800));
+    private static final TimerWheel<Cart> cartExpiry = new TimerWheel<>(1000, System.currentTimeMillis());
+    private static final LongAdder cartsEvicted = Metrics.counter("carts.evicted");
+    private static final LongAdder cartsReleased = Metrics.counter("carts.released");
+    
+    static {
+        Metrics.gauge("carts.live", () -> customerShards != null ? customerShards.cartCount() : carts.size());
+        Metrics.gauge("carts.expiryTimers", cartExpiry::size);
+        ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cart-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleAtFixedRate(DataStore::evictIdleCarts, 1, 1, TimeUnit.SECONDS);
+    }
+    
     // Book methods
     public static List<Book> getAllBooks() {
         return new ArrayList<>(books.values());
@@ -41,17 +83,200 @@ public class DataStore {
         if (book.getId() <= 0) {
             book.setId(bookIdCounter.getAndIncrement());
         }
-        books.put(book.getId(), book);
+        long[] version = new long[1];
+        List<ChangeEvent> events = new ArrayList<>(1);
+        books.compute(book.getId(), (id, previous) -> {
+            indexBook(id, previous, book);
+            recordReplication(ReplicationLog.BOOK, id, book);
+            version[0] = bookChanges.reserve();
+            events.add(ChangeFeed.event(ChangeFeed.CREATED, BOOK_ENTITY, id, book.getPrice(), book.getStock()));
+            return book;
+        });
+        bookChanges.publish(version[0], book.getId());
+        ChangeFeed.publish(events);
         return book;
     }
     
     public static Book updateBook(Book book) {
-        books.put(book.getId(), book);
+        Book[] replaced = new Book[1];
+        long[] version = new long[1];
+        List<ChangeEvent> events = new ArrayList<>(2);
+        // Versions and events are numbered inside compute so they follow the order of the
+        // updates, and published after it so readers already see the new book
+        books.compute(book.getId(), (id, previous) -> {
+            replaced[0] = previous;
+            indexBook(id, previous, book);
+            recordReplication(ReplicationLog.BOOK, id, book);
+            version[0] = bookChanges.reserve();
+            addBookEvents(previous, book, events);
+            return book;
+        });
+        bookChanges.publish(version[0], book.getId());
+        ChangeFeed.publish(events);
+        Book previous = replaced[0];
+        if (previous != null && previous.getPrice() != book.getPrice()) {
+            repriceCarts(book.getId());
+        }
         return book;
     }
     
+    /**
+     * Atomically add to or take from a book's stock
+     * @param bookId ID of the book
+     * @param delta Change in stock, negative to take stock
+     * @return Updated book, or null if the book does not exist or has too little stock
+     */
+    public static Book adjustStock(int bookId, int delta) {
+        Book[] updated = new Book[1];
+        long[] version = new long[1];
+        List<ChangeEvent> events = new ArrayList<>(1);
+        books.computeIfPresent(bookId, (id, book) -> {
+            if (book.getStock() + delta < 0) {
+                return book;
+            }
+            updated[0] = new Book(book.getId(), book.getTitle(), book.getAuthorId(), book.getIsbn(),
+                    book.getPublicationYear(), book.getPrice(), book.getStock() + delta);
+            indexBook(id, book, updated[0]);
+            recordReplication(ReplicationLog.BOOK, id, updated[0]);
+            version[0] = bookChanges.reserve();
+            addBookEvents(book, updated[0], events);
+            return updated[0];
+        });
+        if (version[0] != 0) {
+            bookChanges.publish(version[0], bookId);
+        }
+        ChangeFeed.publish(events);
+        return updated[0];
+    }
+    
     public static void deleteBook(int id) {
-        books.remove(id);
+        long[] version = new long[1];
+        List<ChangeEvent> events = new ArrayList<>(1);
+        books.computeIfPresent(id, (bookId, book) -> {
+            indexBook(bookId, book, null);
+            recordReplication(ReplicationLog.BOOK, bookId, null);
+            version[0] = bookChanges.reserve();
+            events.add(ChangeFeed.event(ChangeFeed.DELETED, BOOK_ENTITY, bookId, null, null));
+            return null;
+        });
+        if (version[0] != 0) {
+            bookChanges.publish(version[0], id);
+        }
+        ChangeFeed.publish(events);
+    }
+    
+    /**
+     * Get the books created, updated or deleted since a version, each listed once with its current state
+     * @param since Version the caller is up to date with
+     * @param limit Maximum number of books to return
+     * @return Changed books and the version to ask from next time, or a resync marker if the
+     *         changes are no longer retained
+     */
+    public static BookChanges getBookChanges(long since, int limit) {
+        BookChanges result = new BookChanges();
+        ChangeLog.Changes changes = bookChanges.since(since, limit);
+        if (changes == null) {
+            // Too far behind: the caller must reload all books, then continue from this version
+            result.setVersion(bookChanges.version());
+            result.setResync(true);
+            return result;
+        }
+        for (Map.Entry<Integer, Long> change : changes.getLatest().entrySet()) {
+            Book book = books.get(change.getKey());
+            result.getChanges().add(new BookChange(change.getKey(), change.getValue(), book == null, book));
+        }
+        result.setVersion(changes.getVersion());
+        result.setHasMore(changes.hasMore());
+        return result;
+    }
+    
+    private static void addBookEvents(Book previous, Book book, List<ChangeEvent> events) {
+        if (previous == null) {
+            events.add(ChangeFeed.event(ChangeFeed.CREATED, BOOK_ENTITY, book.getId(), book.getPrice(), book.getStock()));
+            return;
+        }
+        if (previous.getPrice() != book.getPrice()) {
+            events.add(ChangeFeed.event(ChangeFeed.PRICE, BOOK_ENTITY, book.getId(), book.getPrice(), null));
+        }
+        if (previous.getStock() != book.getStock()) {
+            events.add(ChangeFeed.event(ChangeFeed.STOCK, BOOK_ENTITY, book.getId(), null, book.getStock()));
+        }
+    }
+    
+    /**
+     * Keep the sorted indexes and facet counts in step with a change to a book. Called inside
+     * the compute that makes the change, so changes to one book are indexed in the order they
+     * are made. New sorted keys are added before the old ones are removed, so a concurrent scan
+     * does not miss the book.
+     * @param id ID of the book
+     * @param previous State before the change, or null if the book is new
+     * @param book State after the change, or null if the book is deleted
+     */
+    private static void indexBook(int id, Book previous, Book book) {
+        boolean priceChanged = previous == null || book == null || previous.getPrice() != book.getPrice();
+        boolean yearChanged = previous == null || book == null || previous.getPublicationYear() != book.getPublicationYear();
+        if (book != null && priceChanged) {
+            booksByPrice.add(id, book.getPrice());
+        }
+        if (book != null && yearChanged) {
+            booksByYear.add(id, book.getPublicationYear());
+        }
+        if (previous != null && priceChanged) {
+            booksByPrice.remove(id, previous.getPrice());
+        }
+        if (previous != null && yearChanged) {
+            booksByYear.remove(id, previous.getPublicationYear());
+        }
+        bookFacets.update(id, previous, book);
+    }
+    
+    /**
+     * Count books per author, decade, price band and availability
+     * @param filter Facet values the counted books must all have, or an empty map for all books
+     * @return Counts per facet value
+     */
+    public static BookFacets getBookFacets(Map<String, String> filter) {
+        return bookFacets.count(filter);
+    }
+    
+    /**
+     * Get one page of the books within a price and publication year range, from the sorted
+     * index of the attribute the page is ordered by. The scan is O(log n) plus one step per
+     * book in that attribute's range; the other range is checked on the books it passes.
+     * @param minPrice Inclusive lower bound of the price
+     * @param maxPrice Inclusive upper bound of the price
+     * @param fromYear Inclusive lower bound of the publication year
+     * @param toYear Inclusive upper bound of the publication year
+     * @param byPrice True to order by price, false by publication year; ties are ordered by ID
+     * @param descending True for the highest first
+     * @param after Key to resume after, from the previous page with the same ordering, or null
+     * @param limit Maximum number of books to return
+     * @return Page of books
+     */
+    public static SortedIndex.Page<Book> findBooks(double minPrice, double maxPrice, int fromYear, int toYear,
+            boolean byPrice, boolean descending, SortedIndex.Key after, int limit) {
+        Iterator<SortedIndex.Key> keys = byPrice
+                ? booksByPrice.scan(minPrice, maxPrice, descending, after)
+                : booksByYear.scan(fromYear, toYear, descending, after);
+        List<Book> result = new ArrayList<>();
+        SortedIndex.Key last = null;
+        while (keys.hasNext()) {
+            SortedIndex.Key key = keys.next();
+            Book book = books.get(key.getId());
+            if (book == null || (byPrice ? book.getPrice() : book.getPublicationYear()) != key.getValue()) {
+                continue; // deleted or changed since the scan started
+            }
+            if (book.getPrice() < minPrice || book.getPrice() > maxPrice
+                    || book.getPublicationYear() < fromYear || book.getPublicationYear() > toYear) {
+                continue;
+            }
+            if (result.size() == limit) {
+                return new SortedIndex.Page<>(result, last); // there is at least one more
+            }
+            result.add(book);
+            last = key;
+        }
+        return new SortedIndex.Page<>(result, null);
     }
     
     public static List<Book> getBooksByAuthor(int authorId) {
@@ -64,6 +289,15 @@ public class DataStore {
         return authorBooks;
     }
     
+    /**
+     * Look up books by ID in one pass
+     * @param ids IDs of the books, in the order results should be returned
+     * @return One result per ID, marking the IDs that were not found
+     */
+    public static List<LookupResult<Book>> getBooksByIds(int[] ids) {
+        return lookup(books, ids);
+    }
+    
     // Author methods
     public static List<Author> getAllAuthors() {
         return new ArrayList<>(authors.values());
@@ -77,17 +311,26 @@ public class DataStore {
         if (author.getId() <= 0) {
             author.setId(authorIdCounter.getAndIncrement());
         }
-        authors.put(author.getId(), author);
-        return author;
+        return updateAuthor(author);
     }
     
     public static Author updateAuthor(Author author) {
-        authors.put(author.getId(), author);
+        authors.compute(author.getId(), (id, previous) -> {
+            recordReplication(ReplicationLog.AUTHOR, id, author);
+            return author;
+        });
         return author;
     }
     
     public static void deleteAuthor(int id) {
-        authors.remove(id);
+        authors.computeIfPresent(id, (authorId, author) -> {
+            recordReplication(ReplicationLog.AUTHOR, authorId, null);
+            return null;
+        });
+    }
+    
+    public static List<LookupResult<Author>> getAuthorsByIds(int[] ids) {
+        return lookup(authors, ids);
     }
     
     // Customer methods
@@ -101,7 +344,12 @@ public class DataStore {
     
     public static Customer addCustomer(Customer customer) {
         if (customer.getId() <= 0) {
-            customer.setId(customerIdCounter.getAndIncrement());
+            // In a cluster, take the next ID this node owns, so the customer starts out here
+            int id;
+            do {
+                id = Cluster.stridedId(customerIdCounter.getAndIncrement());
+            } while (!Cluster.owns(id));
+            customer.setId(id);
         }
         customers.put(customer.getId(), customer);
         return customer;
@@ -114,69 +362,427 @@ public class DataStore {
     
     public static void deleteCustomer(int id) {
         customers.remove(id);
-        carts.remove(id);
-        customerOrders.remove(id);
+        clearCart(id);
+        orderHistory.removeCustomer(id);
+    }
+    
+    public static List<LookupResult<Customer>> getCustomersByIds(int[] ids) {
+        return lookup(customers, ids);
+    }
+    
+    /**
+     * Copy a customer's state to hand it to another cluster node
+     * @param id ID of the customer
+     * @return Customer with their cart and orders, or null if the customer has been deleted
+     */
+    static CustomerHandoff exportCustomer(int id) {
+        Customer customer = customers.get(id);
+        if (customer == null) {
+            return null;
+        }
+        CustomerHandoff handoff = new CustomerHandoff();
+        handoff.setCustomer(customer);
+        handoff.setCart(getCart(id));
+        for (PackedOrder order : orderHistory.findByCustomer(id)) {
+            ByteBuffer encoded = ByteBuffer.allocate(order.encodedSize());
+            order.writeTo(encoded);
+            handoff.getOrders().add(encoded.array());
+        }
+        return handoff;
+    }
+    
+    /**
+     * Take over a customer handed off by another cluster node; cart lines are priced anew.
+     * Importing the same handoff again, e.g. after its acknowledgement was lost, changes nothing.
+     * @param handoff Customer with their cart and orders
+     */
+    static void importCustomer(CustomerHandoff handoff) {
+        int id = handoff.getCustomer().getId();
+        customers.put(id, handoff.getCustomer());
+        List<PackedOrder> orders = new ArrayList<>(handoff.getOrders().size());
+        for (byte[] order : handoff.getOrders()) {
+            orders.add(PackedOrder.readFrom(ByteBuffer.wrap(order), 0));
+        }
+        orderHistory.importOrders(id, orders);
+        // Replaces rather than adds to the cart
+        clearCart(id);
+        for (CartItem item : handoff.getCart()) {
+            addItemToCart(id, item);
+        }
+    }
+    
+    /**
+     * Drop a customer handed off to another cluster node. Their order index is kept, so
+     * handing them back later only adds their newer orders.
+     * @param id ID of the customer
+     */
+    static void releaseHandedOffCustomer(int id) {
+        customers.remove(id);
+        clearCart(id);
+    }
+    
+    private static <T> List<LookupResult<T>> lookup(Map<Integer, T> entities, int[] ids) {
+        List<LookupResult<T>> results = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            results.add(new LookupResult<>(id, entities.get(id)));
+        }
+        return results;
+    }
+    
+    // Replication methods
+    
+    private static void recordReplication(String entity, int id, Object state) {
+        if (replicationLog != null) {
+            replicationLog.record(entity, id, state);
+        }
+    }
+    
+    /**
+     * @return Log of catalog mutations, or null unless this server is a replication primary
+     */
+    static ReplicationLog getReplicationLog() {
+        return replicationLog;
+    }
+    
+    /**
+     * Copy the catalog for a joining replica
+     * @return Snapshot message positioned at the log sequence it was taken from
+     */
+    static ReplicationMessage replicationSnapshot() {
+        ReplicationMessage snapshot = new ReplicationMessage();
+        snapshot.setType(ReplicationServer.SNAPSHOT);
+        // Read the position before copying: the copy may already include later mutations,
+        // which is harmless as replaying a mutation sets the same state again
+        snapshot.setSequence(replicationLog.sequence());
+        snapshot.setBooks(getAllBooks());
+        snapshot.setAuthors(getAllAuthors());
+        return snapshot;
+    }
+    
+    /**
+     * Replace the catalog with a primary's snapshot
+     * @param snapshotBooks All books of the primary
+     * @param snapshotAuthors All authors of the primary
+     */
+    static void applyReplicationSnapshot(List<Book> snapshotBooks, List<Author> snapshotAuthors) {
+        Set<Integer> bookIds = new HashSet<>();
+        for (Book book : snapshotBooks) {
+            bookIds.add(book.getId());
+            applyReplicatedBook(book.getId(), book);
+        }
+        for (Integer id : books.keySet()) {
+            if (!bookIds.contains(id)) {
+                applyReplicatedBook(id, null);
+            }
+        }
+        Set<Integer> authorIds = new HashSet<>();
+        for (Author author : snapshotAuthors) {
+            authorIds.add(author.getId());
+            authors.put(author.getId(), author);
+        }
+        authors.keySet().retainAll(authorIds);
+    }
+    
+    /**
+     * Apply a primary's change to a book, with the same change log and events as a local change
+     * @param id ID of the book
+     * @param book New state of the book, or null if it was deleted
+     */
+    static void applyReplicatedBook(int id, Book book) {
+        long[] version = new long[1];
+        List<ChangeEvent> events = new ArrayList<>(2);
+        books.compute(id, (bookId, previous) -> {
+            if (previous == null && book == null) {
+                return null;
+            }
+            indexBook(bookId, previous, book);
+            version[0] = bookChanges.reserve();
+            if (book == null) {
+                events.add(ChangeFeed.event(ChangeFeed.DELETED, BOOK_ENTITY, bookId, null, null));
+            } else {
+                addBookEvents(previous, book, events);
+            }
+            return book;
+        });
+        if (version[0] != 0) {
+            bookChanges.publish(version[0], id);
+        }
+        ChangeFeed.publish(events);
+    }
+    
+    static void applyReplicatedAuthor(int id, Author author) {
+        if (author == null) {
+            authors.remove(id);
+        } else {
+            authors.put(id, author);
+        }
     }
     
     // Cart methods
+    
+    /**
+     * Run a command against a customer's state. When sharding is on it runs on the thread
+     * owning the customer's shard, so commands of one customer never run concurrently.
+     * @param customerId ID of the customer
+     * @param command Command to run
+     * @return Result of the command
+     */
+    public static <T> T onCustomerShard(int customerId, Supplier<T> command) {
+        return customerShards != null ? customerShards.call(customerId, command) : command.get();
+    }
+    
+    private static void onCustomerShardAsync(int customerId, Runnable command) {
+        if (customerShards != null) {
+            customerShards.execute(customerId, command);
+        } else {
+            command.run();
+        }
+    }
+    
+    private static Map<Integer, Cart> cartsOf(int customerId) {
+        return customerShards != null ? customerShards.carts(customerId) : carts;
+    }
+    
     public static void addItemToCart(int customerId, CartItem item) {
-        Map<Integer, CartItem> cart = carts.computeIfAbsent(customerId, k -> new HashMap<>());
-        cart.put(item.getBookId(), item);
+        onCustomerShard(customerId, () -> {
+            long now = System.currentTimeMillis();
+            // Register before pricing so a concurrent price change always finds this cart
+            indexCartLine(item.getBookId(), customerId);
+            return cartsOf(customerId).compute(customerId, (id, cart) -> {
+                if (cart == null) {
+                    cart = new Cart(id, now);
+                    cart.setExpiry(cartExpiry.schedule(cart, now + CART_TTL_MILLIS));
+                }
+                cart.put(item.getBookId(), item.getQuantity(), currentPriceCents(item.getBookId()));
+                cart.touch(now);
+                return cart;
+            });
+        });
     }
     
     public static List<CartItem> getCart(int customerId) {
-        Map<Integer, CartItem> cart = carts.get(customerId);
-        if (cart == null) {
-            return new ArrayList<>();
-        }
-        return new ArrayList<>(cart.values());
+        return onCustomerShard(customerId, () -> {
+            Cart cart = cartsOf(customerId).get(customerId);
+            if (cart == null) {
+                return new ArrayList<>();
+            }
+            cart.touch(System.currentTimeMillis());
+            return cart.items();
+        });
     }
     
-    public static void updateCartItem(int customerId, CartItem item) {
-        Map<Integer, CartItem> cart = carts.get(customerId);
-        if (cart != null) {
-            cart.put(item.getBookId(), item);
+    /**
+     * Get the customer's cart with current prices, subtotal and stock availability
+     * @param customerId ID of the customer
+     * @return Priced cart, or null if the customer has no cart
+     */
+    public static PricedCart getPricedCart(int customerId) {
+        PricedCart priced = onCustomerShard(customerId, () -> {
+            Cart cart = cartsOf(customerId).get(customerId);
+            if (cart == null) {
+                return null;
+            }
+            cart.touch(System.currentTimeMillis());
+            return cart.priced();
+        });
+        if (priced == null) {
+            return null;
+        }
+        boolean allInStock = true;
+        for (PricedCartLine line : priced.getLines()) {
+            Book book = books.get(line.getBookId());
+            if (book != null) {
+                line.setTitle(book.getTitle());
+                line.setStock(book.getStock());
+                line.setAvailable(true);
+                line.setInStock(book.getStock() >= line.getQuantity());
+            }
+            allInStock &= line.isInStock();
         }
+        priced.setAllInStock(allInStock);
+        return priced;
+    }
+    
+    /**
+     * Change the quantity of a line already in the cart
+     * @param customerId ID of the customer
+     * @param item Book and new quantity
+     * @return True if the line was updated, false if the cart does not have the book
+     */
+    public static boolean updateCartItem(int customerId, CartItem item) {
+        boolean[] found = new boolean[1];
+        // Checked inside the compute, so a concurrent removal cannot be undone by adding the
+        // line back without registering it for repricing
+        onCustomerShard(customerId, () -> cartsOf(customerId).computeIfPresent(customerId, (id, cart) -> {
+            if (cart.contains(item.getBookId())) {
+                cart.put(item.getBookId(), item.getQuantity(), currentPriceCents(item.getBookId()));
+                cart.touch(System.currentTimeMillis());
+                found[0] = true;
+            }
+            return cart;
+        }));
+        return found[0];
     }
     
     public static void removeCartItem(int customerId, int bookId) {
-        Map<Integer, CartItem> cart = carts.get(customerId);
-        if (cart != null) {
+        onCustomerShard(customerId, () -> cartsOf(customerId).computeIfPresent(customerId, (id, cart) -> {
             cart.remove(bookId);
-        }
+            cart.touch(System.currentTimeMillis());
+            // Before releasing an emptied cart, whose unindexing only sees the lines left
+            unindexCartLine(bookId, id);
+            if (cart.isEmpty()) {
+                releaseCart(cart);
+                return null;
+            }
+            return cart;
+        }));
     }
     
     public static void clearCart(int customerId) {
-        Map<Integer, CartItem> cart = carts.get(customerId);
+        onCustomerShard(customerId, () -> {
+            releaseCart(cartsOf(customerId).remove(customerId));
+            return null;
+        });
+    }
+    
+    private static void releaseCart(Cart cart) {
         if (cart != null) {
-            cart.clear();
+            cartExpiry.cancel(cart.getExpiry());
+            unindexCart(cart);
+            cartsReleased.increment();
+        }
+    }
+    
+    private static int currentPriceCents(int bookId) {
+        Book book = books.get(bookId);
+        return book != null ? Math.toIntExact(PackedOrder.toCents(book.getPrice())) : 0;
+    }
+    
+    private static void repriceCarts(int bookId) {
+        Set<Integer> holders = cartsByBook.get(bookId);
+        if (holders == null) {
+            return;
+        }
+        for (Integer customerId : holders) {
+            // Queued behind the shard's other commands; a cart priced before this change is
+            // corrected when the shard gets to it. The price is read when the reprice runs, so
+            // reprices of concurrent updates that run out of order still end at the latest price.
+            onCustomerShardAsync(customerId, () -> cartsOf(customerId).computeIfPresent(customerId, (id, cart) -> {
+                Book book = books.get(bookId);
+                if (book != null) {
+                    cart.reprice(bookId, Math.toIntExact(PackedOrder.toCents(book.getPrice())));
+                }
+                return cart;
+            }));
+        }
+    }
+    
+    private static void indexCartLine(int bookId, int customerId) {
+        cartsByBook.compute(bookId, (id, holders) -> {
+            if (holders == null) {
+                holders = ConcurrentHashMap.newKeySet();
+            }
+            holders.add(customerId);
+            return holders;
+        });
+    }
+    
+    private static void unindexCartLine(int bookId, int customerId) {
+        cartsByBook.computeIfPresent(bookId, (id, holders) -> {
+            holders.remove(customerId);
+            return holders.isEmpty() ? null : holders;
+        });
+    }
+    
+    private static void unindexCart(Cart cart) {
+        for (int bookId : cart.bookIds()) {
+            unindexCartLine(bookId, cart.getCustomerId());
+        }
+    }
+    
+    private static void evictIdleCarts() {
+        long now = System.currentTimeMillis();
+        for (Cart expired : cartExpiry.advance(now)) {
+            int customerId = expired.getCustomerId();
+            onCustomerShardAsync(customerId, () -> cartsOf(customerId).computeIfPresent(customerId, (id, cart) -> {
+                if (cart != expired) {
+                    return cart;
+                }
+                long idleUntil = cart.getLastTouched() + CART_TTL_MILLIS;
+                if (idleUntil <= now) {
+                    unindexCart(cart);
+                    cartsEvicted.increment();
+                    return null;
+                }
+                // Touched since it was scheduled; wait out the rest of the idle period
+                cart.setExpiry(cartExpiry.schedule(cart, idleUntil));
+                return cart;
+            }));
         }
     }
     
     // Order methods
-    public static Order createOrder(int customerId, List<CartItem> items, double totalPrice) {
-        Order order = new Order(orderIdCounter.getAndIncrement(), customerId, items, totalPrice);
-        orders.put(order.getId(), order);
-        
-        List<Order> customerOrderList = customerOrders.computeIfAbsent(customerId, k -> new ArrayList<>());
-        customerOrderList.add(order);
-        
-        return order;
+    public static Order createOrder(int customerId, List<CartItem> items, double[] unitPrices, double totalPrice) {
+        PackedOrder order = PackedOrder.pack(Cluster.stridedId(orderIdCounter.getAndIncrement()), customerId, items, unitPrices,
+                totalPrice, System.currentTimeMillis());
+        orderHistory.append(order);
+        return order.toOrder();
     }
     
     public static List<Order> getCustomerOrders(int customerId) {
-        return customerOrders.getOrDefault(customerId, new ArrayList<>());
+        List<PackedOrder> customerOrderList = orderHistory.findByCustomer(customerId);
+        List<Order> result = new ArrayList<>(customerOrderList.size());
+        for (PackedOrder order : customerOrderList) {
+            result.add(order.toOrder());
+        }
+        return result;
+    }
+    
+    public static OrderHistoryStore.Page getCustomerOrders(int customerId, long from, long to, int cursor, int limit) {
+        return orderHistory.findByCustomer(customerId, from, to, cursor, limit);
+    }
+    
+    public static OrderHistoryStore.Snapshot getOrderSnapshot() {
+        return orderHistory.snapshot();
     }
     
     public static Order getOrderById(int id) {
-        return orders.get(id);
+        PackedOrder order = orderHistory.find(id);
+        return order != null ? order.toOrder() : null;
     }
     
     public static Order getCustomerOrderById(int customerId, int orderId) {
-        Order order = orders.get(orderId);
+        PackedOrder order = orderHistory.find(orderId);
         if (order != null && order.getCustomerId() == customerId) {
-            return order;
+            return order.toOrder();
         }
         return null;
     }
-} 
\ No newline at end of file
+    
+    /**
+     * Empty the store and restart its ID sequences, after a warm-up run against scratch data.
+     * Only safe before the server takes traffic.
+     */
+    public static void reset() {
+        for (Integer customerId : customers.keySet()) {
+            clearCart(customerId);
+        }
+        customers.clear();
+        books.clear();
+        booksByPrice.clear();
+        booksByYear.clear();
+        bookFacets.clear();
+        authors.clear();
+        cartsByBook.clear();
+        orderHistory.clear();
+        bookChanges.clear();
+        if (replicationLog != null) {
+            replicationLog.clear();
+        }
+        ChangeFeed.reset();
+        bookIdCounter.set(1);
+        authorIdCounter.set(1);
+        customerIdCounter.set(1);
+        orderIdCounter.set(1);
+    }
+}
@@ -0,0 +1,153 @@
+package com.demo.bookstore.util;
+
+import com.demo.bookstore.exception.InvalidInputException;
+import com.demo.bookstore.model.Author;
+import com.demo.bookstore.model.Book;
+import com.demo.bookstore.model.Customer;
+import com.demo.bookstore.model.Expanded;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects the entities referenced by a response, as requested with {@code ?expand=}.
+ * Each referenced entity is included once however often it is referenced, and the
+ * number of included entities is capped; past the cap the response is marked truncated.
+ */
+public final class Expansion {
+
+    public static final int MAX_DEPTH = 3;
+    public static final int MAX_INCLUDED = 1000;
+
+    private final Set<String> paths;
+    private final Map<Integer, Book> books = new LinkedHashMap<>();
+    private final Map<Integer, Author> authors = new LinkedHashMap<>();
+    private final Map<Integer, Customer> customers = new LinkedHashMap<>();
+    private int included;
+    private boolean truncated;
+
+    private Expansion(Set<String> paths) {
+        this.paths = paths;
+    }
+
+    /**
+     * Parse an {@code expand} parameter
+     * @param expand Comma-separated dotted paths, e.g. {@code items.book.author}
+     * @param supported Paths the endpoint can expand
+     * @return Expansion of the requested paths and every path leading to them
+     * @throws InvalidInputException if a path is unsupported or too deep
+     */
+    public static Expansion parse(String expand, Set<String> supported) {
+        Set<String> paths = new HashSet<>();
+        for (String path : expand.split(",")) {
+            String trimmed = path.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (trimmed.split("\\.").length > MAX_DEPTH) {
+                throw new InvalidInputException("Expansion '" + trimmed + "' is deeper than " + MAX_DEPTH + " levels");
+            }
+            if (!supported.contains(trimmed)) {
+                throw new InvalidInputException("Cannot expand '" + trimmed + "'; supported expansions are " + supported);
+            }
+            // Expanding a.b.c also needs a.b
+            for (int dot = trimmed.indexOf('.'); dot > 0; dot = trimmed.indexOf('.', dot + 1)) {
+                paths.add(trimmed.substring(0, dot));
+            }
+            paths.add(trimmed);
+        }
+        if (paths.isEmpty()) {
+            throw new InvalidInputException("At least one expansion is required");
+        }
+        return new Expansion(paths);
+    }
+
+    public boolean has(String path) {
+        return paths.contains(path);
+    }
+
+    /**
+     * Include a book by ID
+     * @param bookId ID of the referenced book
+     * @return The book, or null if it does not exist or the cap was reached
+     */
+    public Book book(int bookId) {
+        Book book = books.get(bookId);
+        if (book == null && reserve(books.containsKey(bookId))) {
+            book = DataStore.getBookById(bookId);
+            books.put(bookId, book);
+        }
+        return book;
+    }
+
+    /**
+     * Include a book that is already loaded
+     * @param book Referenced book
+     */
+    public void include(Book book) {
+        if (!books.containsKey(book.getId()) && reserve(false)) {
+            books.put(book.getId(), book);
+        }
+    }
+
+    public Author author(int authorId) {
+        Author author = authors.get(authorId);
+        if (author == null && reserve(authors.containsKey(authorId))) {
+            author = DataStore.getAuthorById(authorId);
+            authors.put(authorId, author);
+        }
+        return author;
+    }
+
+    public Customer customer(int customerId) {
+        Customer customer = customers.get(customerId);
+        if (customer == null && reserve(customers.containsKey(customerId))) {
+            customer = DataStore.getCustomerById(customerId);
+            customers.put(customerId, customer);
+        }
+        return customer;
+    }
+
+    /**
+     * Wrap the primary data together with everything included
+     * @param data Entity or list of entities the request asked for
+     * @return Response envelope
+     */
+    public Expanded wrap(Object data) {
+        Expanded expanded = new Expanded();
+        expanded.setData(data);
+        putIncluded(expanded, "books", books);
+        putIncluded(expanded, "authors", authors);
+        putIncluded(expanded, "customers", customers);
+        expanded.setTruncated(truncated);
+        return expanded;
+    }
+
+    private boolean reserve(boolean seen) {
+        if (seen) {
+            return false; // looked up before and not found
+        }
+        if (included >= MAX_INCLUDED) {
+            truncated = true;
+            return false;
+        }
+        included++;
+        return true;
+    }
+
+    private static void putIncluded(Expanded expanded, String type, Map<Integer, ?> entities) {
+        List<Object> found = new ArrayList<>(entities.size());
+        for (Object entity : entities.values()) {
+            if (entity != null) {
+                found.add(entity);
+            }
+        }
+        if (!found.isEmpty()) {
+            expanded.getIncluded().put(type, found);
+        }
+    }
+}
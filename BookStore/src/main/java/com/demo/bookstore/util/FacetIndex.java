@@ -0,0 +1,275 @@
+package com.demo.bookstore.util;
+
+import com.demo.bookstore.model.Book;
+import com.demo.bookstore.model.BookFacets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Book counts per author, decade, price band and availability, kept up to date as books
+ * change rather than computed by walking the catalog. Each value of each facet is a bucket
+ * with a count and a bitmap of the books that have it. Bitmaps are indexed by a dense slot
+ * per book rather than by book ID, so their size follows the number of books however large
+ * the IDs are; slots of deleted books are reused. Unfiltered counts are read straight from
+ * the buckets. Counts within a filter AND the bitmaps of the filter's values
+ * and tally the books left, so they cost a pass over the bitmap words plus one step per
+ * matching book.
+ */
+public final class FacetIndex {
+
+    public static final String AUTHOR = "authorId";
+    public static final String DECADE = "decade";
+    public static final String PRICE_BAND = "priceBand";
+    public static final String AVAILABILITY = "availability";
+    public static final List<String> FACETS = List.of(AUTHOR, DECADE, PRICE_BAND, AVAILABILITY);
+
+    private static final double[] PRICE_BOUNDS = {10, 20, 30, 50};
+    private static final Comparator<Bucket> BUCKET_ORDER =
+            Comparator.<Bucket>comparingLong(bucket -> bucket.order).thenComparing(bucket -> bucket.value);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Facet[] facets = new Facet[FACETS.size()];
+    private final Map<Integer, Integer> slots = new HashMap<>(); // book ID -> slot
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+
+    public FacetIndex() {
+        for (int i = 0; i < facets.length; i++) {
+            facets[i] = new Facet();
+        }
+    }
+
+    /**
+     * Move a book between buckets after a change
+     * @param id ID of the book
+     * @param previous State before the change, or null if the book is new
+     * @param book State after the change, or null if the book is deleted
+     */
+    public void update(int id, Book previous, Book book) {
+        if (previous != null && book != null && sameValues(previous, book)) {
+            return; // e.g. a sale that leaves the book in stock; skip the lock checkouts would contend on
+        }
+        String[] after = book != null ? valuesOf(book) : null;
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.get(id);
+            if (slot == null) {
+                if (after == null) {
+                    return;
+                }
+                // Without free slots, slots 0 to size - 1 are all taken
+                slot = freeCount > 0 ? freeSlots[--freeCount] : slots.size();
+                slots.put(id, slot);
+            }
+            for (int i = 0; i < facets.length; i++) {
+                facets[i].move(slot, after != null ? after[i] : null);
+            }
+            if (after == null) {
+                slots.remove(id);
+                if (freeCount == freeSlots.length) {
+                    freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+                }
+                freeSlots[freeCount++] = slot;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < facets.length; i++) {
+                facets[i] = new Facet();
+            }
+            slots.clear();
+            freeCount = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Count the books per value of every facet
+     * @param filter Facet values every counted book must have, or an empty map to count all books
+     * @return Number of books matching the filter, and their counts per facet value
+     */
+    public BookFacets count(Map<String, String> filter) {
+        BookFacets result = new BookFacets();
+        Map<String, Map<String, Integer>> counts = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            if (filter.isEmpty()) {
+                for (int i = 0; i < facets.length; i++) {
+                    int[] bucketCounts = new int[facets[i].buckets.size()];
+                    for (Bucket bucket : facets[i].buckets) {
+                        bucketCounts[bucket.ordinal] = bucket.count;
+                    }
+                    counts.put(FACETS.get(i), facets[i].toMap(bucketCounts));
+                }
+                result.setTotal(slots.size());
+                result.setFacets(counts);
+                return result;
+            }
+
+            BitSet matching = null;
+            for (Map.Entry<String, String> selected : filter.entrySet()) {
+                Bucket bucket = facets[FACETS.indexOf(selected.getKey())].byValue.get(selected.getValue());
+                if (bucket == null) {
+                    matching = new BitSet();
+                    break;
+                }
+                if (matching == null) {
+                    matching = (BitSet) bucket.books.clone();
+                } else {
+                    matching.and(bucket.books);
+                }
+            }
+            int[][] bucketCounts = new int[facets.length][];
+            for (int i = 0; i < facets.length; i++) {
+                bucketCounts[i] = new int[facets[i].buckets.size()];
+            }
+            int matched = 0;
+            for (int slot = matching.nextSetBit(0); slot >= 0; slot = matching.nextSetBit(slot + 1)) {
+                for (int i = 0; i < facets.length; i++) {
+                    bucketCounts[i][facets[i].ordinals[slot] - 1]++;
+                }
+                matched++;
+            }
+            for (int i = 0; i < facets.length; i++) {
+                counts.put(FACETS.get(i), facets[i].toMap(bucketCounts[i]));
+            }
+            result.setTotal(matched);
+            result.setFacets(counts);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param book A book
+     * @return The book's value of each facet, in the order of {@link #FACETS}
+     */
+    static String[] valuesOf(Book book) {
+        return new String[] {
+            Integer.toString(book.getAuthorId()),
+            Integer.toString(decade(book)),
+            priceBand(priceBandIndex(book.getPrice())),
+            book.getStock() > 0 ? "inStock" : "outOfStock"
+        };
+    }
+
+    private static boolean sameValues(Book a, Book b) {
+        return a.getAuthorId() == b.getAuthorId()
+                && decade(a) == decade(b)
+                && priceBandIndex(a.getPrice()) == priceBandIndex(b.getPrice())
+                && (a.getStock() > 0) == (b.getStock() > 0);
+    }
+
+    private static int decade(Book book) {
+        return Math.floorDiv(book.getPublicationYear(), 10) * 10;
+    }
+
+    private static int priceBandIndex(double price) {
+        int band = 0;
+        while (band < PRICE_BOUNDS.length && price >= PRICE_BOUNDS[band]) {
+            band++;
+        }
+        return band;
+    }
+
+    // "0-10", "10-20", ... "50+"
+    private static String priceBand(int band) {
+        String lower = band == 0 ? "0" : format(PRICE_BOUNDS[band - 1]);
+        return band < PRICE_BOUNDS.length ? lower + "-" + format(PRICE_BOUNDS[band]) : lower + "+";
+    }
+
+    private static String format(double bound) {
+        return bound == Math.rint(bound) ? Long.toString((long) bound) : Double.toString(bound);
+    }
+
+    /**
+     * Buckets of one facet. Buckets are numbered in the order their values are first seen and
+     * kept when they empty, so each book's bucket can be stored as a number indexed by its slot.
+     */
+    private static final class Facet {
+        final Map<String, Bucket> byValue = new HashMap<>();
+        final List<Bucket> buckets = new ArrayList<>();
+        // Bucket ordinal + 1 of each book, indexed by slot; 0 for no book
+        int[] ordinals = new int[1024];
+
+        void move(int slot, String value) {
+            if (slot >= ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, Math.max(slot + 1, ordinals.length * 2));
+            }
+            if (ordinals[slot] != 0) {
+                Bucket from = buckets.get(ordinals[slot] - 1);
+                from.books.clear(slot);
+                from.count--;
+                ordinals[slot] = 0;
+            }
+            if (value != null) {
+                Bucket to = byValue.computeIfAbsent(value, v -> {
+                    Bucket bucket = new Bucket(v, buckets.size());
+                    buckets.add(bucket);
+                    return bucket;
+                });
+                to.books.set(slot);
+                to.count++;
+                ordinals[slot] = to.ordinal + 1;
+            }
+        }
+
+        // Non-zero counts, numeric values such as author IDs, decades and bands in numeric order
+        Map<String, Integer> toMap(int[] counts) {
+            List<Bucket> nonEmpty = new ArrayList<>();
+            for (Bucket bucket : buckets) {
+                if (counts[bucket.ordinal] > 0) {
+                    nonEmpty.add(bucket);
+                }
+            }
+            nonEmpty.sort(BUCKET_ORDER);
+            Map<String, Integer> result = new LinkedHashMap<>();
+            for (Bucket bucket : nonEmpty) {
+                result.put(bucket.value, counts[bucket.ordinal]);
+            }
+            return result;
+        }
+    }
+
+    private static final class Bucket {
+        final String value;
+        final int ordinal;
+        final long order;
+        final BitSet books = new BitSet();
+        int count;
+
+        Bucket(String value, int ordinal) {
+            this.value = value;
+            this.ordinal = ordinal;
+            this.order = leadingNumber(value);
+        }
+
+        private static long leadingNumber(String value) {
+            int end = value.startsWith("-") ? 1 : 0;
+            while (end < value.length() && Character.isDigit(value.charAt(end))) {
+                end++;
+            }
+            try {
+                return Long.parseLong(value.substring(0, end));
+            } catch (NumberFormatException e) {
+                return Long.MAX_VALUE; // not a number; after the numbers
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.demo.bookstore.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Consistent-hash ring assigning customer IDs to cluster nodes. Each node is placed at many
+ * points on the ring and owns the keys hashing to just before each of its points, so the
+ * keys are spread evenly and a node joining or leaving moves only its share of them.
+ * Immutable; membership changes build a new ring.
+ */
+public final class HashRing {
+
+    private static final int POINTS_PER_NODE = 128;
+
+    private final List<String> nodes;
+    private final int[] points; // sorted hashes of the nodes' points
+    private final String[] owners; // owners[i] is the node placed at points[i]
+
+    /**
+     * @param nodes Member nodes; must not be empty
+     */
+    public HashRing(Collection<String> nodes) {
+        this.nodes = List.copyOf(nodes);
+        long[] placed = new long[this.nodes.size() * POINTS_PER_NODE];
+        int n = 0;
+        for (int node = 0; node < this.nodes.size(); node++) {
+            int seed = this.nodes.get(node).hashCode();
+            for (int point = 0; point < POINTS_PER_NODE; point++) {
+                // Sort by hash, remembering the node in the low bits
+                placed[n++] = ((long) mix(seed ^ mix(point + 1)) << 32) | node;
+            }
+        }
+        Arrays.sort(placed);
+        this.points = new int[placed.length];
+        this.owners = new String[placed.length];
+        for (int i = 0; i < placed.length; i++) {
+            points[i] = (int) (placed[i] >> 32);
+            owners[i] = this.nodes.get((int) placed[i]);
+        }
+    }
+
+    public List<String> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * @param key Customer ID
+     * @return Node owning the key
+     */
+    public String ownerOf(int key) {
+        int hash = mix(key);
+        int i = Arrays.binarySearch(points, hash);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return owners[i == points.length ? 0 : i];
+    }
+
+    // Finalizer of MurmurHash3, spreading sequential IDs across the ring
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,43 @@
+package com.demo.bookstore.util;
+
+/**
+ * Readiness of this server to take traffic, for load balancers. The server is not ready
+ * until startup, including any warm-up and cluster join, has finished, nor while a replica
+ * is waiting for its first snapshot from the primary.
+ */
+public final class Health {
+
+    private static volatile String startupPhase = "Starting";
+
+    private Health() {
+    }
+
+    /**
+     * Record what startup is doing, while the server is not ready yet
+     * @param phase Description of the current startup phase
+     */
+    public static void starting(String phase) {
+        startupPhase = phase;
+    }
+
+    /**
+     * Record that startup has finished
+     */
+    public static void started() {
+        startupPhase = null;
+    }
+
+    /**
+     * @return Why the server should not take traffic yet, or null if it is ready
+     */
+    public static String notReadyReason() {
+        String phase = startupPhase;
+        if (phase != null) {
+            return phase;
+        }
+        if (ReplicaClient.isReplica() && !ReplicaClient.isSynced()) {
+            return "Waiting for the first snapshot from the primary";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,146 @@
+package com.demo.bookstore.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free approximate request counts per integer key, with the most frequent keys tracked.
+ * Counts live in a count-min sketch: a few rows of counters, each key hashed to one counter
+ * per row, and the smallest of those counters as the estimate. Collisions only make an
+ * estimate too high, and memory is fixed however many keys there are. Keys whose estimate
+ * reaches the top K are kept as candidates; when there are twice as many as needed, the
+ * lowest are dropped. {@link #decay()} halves every count so that old traffic fades.
+ */
+public final class HeavyHitters {
+
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = {0x9E3779B1, 0x85EBCA77, 0xC2B2AE3D, 0x27D4EB2F};
+
+    private final int k;
+    private final int width;
+    private final AtomicLongArray counters;
+    private final Set<Integer> candidates = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean pruning = new AtomicBoolean();
+    // Estimate of the k-th most frequent candidate when the candidates were last pruned
+    private volatile long threshold;
+
+    /**
+     * @param width Counters per row, rounded up to a power of two; more means fewer collisions
+     * @param k Number of most frequent keys to track
+     */
+    public HeavyHitters(int width, int k) {
+        this.k = k;
+        this.width = Integer.highestOneBit(Math.max(2, width) * 2 - 1);
+        this.counters = new AtomicLongArray(DEPTH * this.width);
+    }
+
+    /**
+     * Count one occurrence of a key
+     * @param key The key
+     * @return New estimate of the key's count
+     */
+    public long increment(int key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(index(key, row)));
+        }
+        // Only a key that is not a candidate yet writes to the set
+        if (estimate >= threshold && !candidates.contains(key) && candidates.add(key) && candidates.size() > 2 * k) {
+            prune();
+        }
+        return estimate;
+    }
+
+    /**
+     * @param key The key
+     * @return Estimated count of the key, never lower than the true count
+     */
+    public long estimate(int key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.get(index(key, row)));
+        }
+        return estimate;
+    }
+
+    /**
+     * @param key The key
+     * @return True if the key is currently about as frequent as the k-th most frequent key
+     */
+    public boolean isHot(int key) {
+        long current = threshold;
+        return current > 0 && estimate(key) >= current;
+    }
+
+    /**
+     * The most frequent keys, most frequent first
+     * @param limit Maximum number of keys, at most k
+     * @return Pairs of key and estimated count
+     */
+    public List<long[]> top(int limit) {
+        List<long[]> ranked = rank();
+        return new ArrayList<>(ranked.subList(0, Math.min(Math.min(limit, k), ranked.size())));
+    }
+
+    /**
+     * Halve every count. Increments racing with this may be halved or not.
+     */
+    public void decay() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.getAndUpdate(i, count -> count >>> 1);
+        }
+        candidates.removeIf(key -> estimate(key) == 0);
+        prune();
+    }
+
+    /**
+     * Forget every count
+     */
+    public void clear() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, 0);
+        }
+        candidates.clear();
+        threshold = 0;
+    }
+
+    public int candidateCount() {
+        return candidates.size();
+    }
+
+    // Keep the k most frequent candidates; skipped if another thread is already pruning
+    private void prune() {
+        if (!pruning.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<long[]> ranked = rank();
+            for (int i = k; i < ranked.size(); i++) {
+                candidates.remove((int) ranked.get(i)[0]);
+            }
+            threshold = ranked.isEmpty() ? 0 : ranked.get(Math.min(k, ranked.size()) - 1)[1];
+        } finally {
+            pruning.set(false);
+        }
+    }
+
+    // All candidates by current estimate, highest first
+    private List<long[]> rank() {
+        List<long[]> ranked = new ArrayList<>(candidates.size());
+        for (Integer key : candidates) {
+            ranked.add(new long[] {key, estimate(key)});
+        }
+        ranked.sort((a, b) -> Long.compare(b[1], a[1]));
+        return ranked;
+    }
+
+    private int index(int key, int row) {
+        int hash = key * SEEDS[row];
+        hash ^= hash >>> 16;
+        return row * width + (hash & (width - 1));
+    }
+}
@@ -0,0 +1,130 @@
+package com.demo.bookstore.util;
+
+import com.demo.bookstore.model.HotKey;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Which books and customers are requested most right now. Book lookups and customers' cart
+ * and order requests are sampled into one {@link HeavyHitters} per entity type, and every
+ * count is halved each {@code bookstore.hotKeys.halfLifeSeconds} so the counts reflect recent
+ * traffic. Besides the rankings, {@link #isHot} and {@link #estimate} can serve as an
+ * admission signal, e.g. for a response cache to only admit keys that are hot, or ones
+ * requested more often than the entry they would evict.
+ */
+public final class HotKeys {
+
+    /**
+     * Entity types whose requests are tracked
+     */
+    public enum Type {
+        BOOK("book"),
+        CUSTOMER("customer");
+
+        private final String label;
+
+        Type(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * Look up a type by its label
+         * @param label Label such as "book"
+         * @return Matching type, or null if none matches
+         */
+        public static Type fromLabel(String label) {
+            for (Type type : values()) {
+                if (type.label.equals(label)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    public static final int MAX_K = 100;
+    // Count one request in this many, which keeps hot keys' counters from being contended
+    private static final int SAMPLE_EVERY = Math.max(1, Integer.getInteger("bookstore.hotKeys.sampleEvery", 4));
+    private static final long HALF_LIFE_SECONDS = Long.getLong("bookstore.hotKeys.halfLifeSeconds", 60);
+    private static final int SKETCH_WIDTH = Integer.getInteger("bookstore.hotKeys.sketchWidth", 4096);
+
+    private static final Map<Type, HeavyHitters> trackers = new EnumMap<>(Type.class);
+
+    static {
+        for (Type type : Type.values()) {
+            trackers.put(type, new HeavyHitters(SKETCH_WIDTH, MAX_K));
+            Metrics.gauge("hotKeys." + type.getLabel() + ".candidates", trackers.get(type)::candidateCount);
+        }
+        ScheduledExecutorService decayer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "hot-keys-decay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        decayer.scheduleAtFixedRate(() -> trackers.values().forEach(HeavyHitters::decay),
+                HALF_LIFE_SECONDS, HALF_LIFE_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private HotKeys() {
+    }
+
+    /**
+     * Count a request for a key, if it is sampled
+     * @param type Entity type of the key
+     * @param id ID of the book or customer
+     */
+    public static void record(Type type, int id) {
+        if (SAMPLE_EVERY == 1 || ThreadLocalRandom.current().nextInt(SAMPLE_EVERY) == 0) {
+            trackers.get(type).increment(id);
+        }
+    }
+
+    /**
+     * @param type Entity type of the key
+     * @param id ID of the book or customer
+     * @return True if the key is currently requested about as often as the top {@link #MAX_K}
+     */
+    public static boolean isHot(Type type, int id) {
+        return trackers.get(type).isHot(id);
+    }
+
+    /**
+     * @param type Entity type of the key
+     * @param id ID of the book or customer
+     * @return Estimated recent requests for the key; too high rather than too low
+     */
+    public static long estimate(Type type, int id) {
+        return trackers.get(type).estimate(id) * SAMPLE_EVERY;
+    }
+
+    /**
+     * Most requested keys of a type
+     * @param type Entity type
+     * @param k Maximum number of keys, at most {@link #MAX_K}
+     * @return Keys with their estimated recent requests, most requested first
+     */
+    public static List<HotKey> top(Type type, int k) {
+        List<HotKey> result = new ArrayList<>();
+        for (long[] entry : trackers.get(type).top(k)) {
+            result.add(new HotKey((int) entry[0], entry[1] * SAMPLE_EVERY));
+        }
+        return result;
+    }
+
+    /**
+     * Forget every count, e.g. those of a warm-up run
+     */
+    public static void reset() {
+        trackers.values().forEach(HeavyHitters::clear);
+    }
+}
@@ -0,0 +1,198 @@
+package com.demo.bookstore.util;
+
+import com.demo.bookstore.exception.IdempotencyConflictException;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, expiring in-memory store of idempotency keys. The first request with a key
+ * runs the action; concurrent duplicates wait on its result and later duplicates get the
+ * stored result back, so a retry never repeats the work. A duplicate costs one map lookup.
+ *
+ * Keys are dropped in insertion order once they expire or the store exceeds its size
+ * limit, except that a key whose request is still running is never dropped. A failed action
+ * releases its key, so a retry after a failure runs again.
+ *
+ * @param <T> Type of the stored result
+ */
+public final class IdempotencyStore<T> {
+
+    private final long ttlMillis;
+    private final int maxKeys;
+    private final long waitMillis;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock purging = new ReentrantLock();
+    private final LongAdder executed;
+    private final LongAdder replayed;
+    private final LongAdder waited;
+
+    public IdempotencyStore(String metricPrefix, long ttlMillis, int maxKeys, long waitMillis) {
+        this.ttlMillis = ttlMillis;
+        this.maxKeys = Math.max(1, maxKeys);
+        this.waitMillis = waitMillis;
+        this.executed = Metrics.counter(metricPrefix + ".executed");
+        this.replayed = Metrics.counter(metricPrefix + ".replayed");
+        this.waited = Metrics.counter(metricPrefix + ".waited");
+        Metrics.gauge(metricPrefix + ".keys", entries::size);
+    }
+
+    /**
+     * Create a store configured from the {@code bookstore.idempotency.*} system properties
+     * @param metricPrefix Prefix of the metrics reported by the store
+     * @return Idempotency store
+     */
+    public static <T> IdempotencyStore<T> fromSystemProperties(String metricPrefix) {
+        long ttlMillis = TimeUnit.SECONDS.toMillis(Long.getLong("bookstore.idempotency.ttlSeconds", 86400));
+        int maxKeys = Integer.getInteger("bookstore.idempotency.maxKeys", 100000);
+        long waitMillis = TimeUnit.SECONDS.toMillis(Long.getLong("bookstore.idempotency.waitSeconds", 30));
+        return new IdempotencyStore<>(metricPrefix, ttlMillis, maxKeys, waitMillis);
+    }
+
+    /**
+     * Run an action at most once per key
+     * @param key Idempotency key, already scoped to its caller
+     * @param action Action to run if the key is new
+     * @return Result of the action and whether it was replayed from an earlier request
+     * @throws IdempotencyConflictException if an earlier request with the key is still running after the wait limit
+     */
+    public Outcome<T> execute(String key, Supplier<T> action) {
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(key);
+        if (entry == null || entry.isExpired(now)) {
+            Entry created = new Entry(key, now + ttlMillis);
+            entry = entries.compute(key, (k, current) ->
+                    current == null || current.isExpired(now) ? created : current);
+            if (entry == created) {
+                insertionOrder.offer(created);
+                purge(now);
+                return new Outcome<>(run(created, action), false);
+            }
+        }
+        if (!entry.result.isDone()) {
+            waited.increment();
+        }
+        T result = await(entry);
+        replayed.increment();
+        return new Outcome<>(result, true);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private T run(Entry entry, Supplier<T> action) {
+        executed.increment();
+        try {
+            T result = action.get();
+            entry.result.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            entries.remove(entry.key, entry);
+            entry.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private T await(Entry entry) {
+        try {
+            return entry.result.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyConflictException("A request with this idempotency key is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("Interrupted while waiting for a request with this idempotency key");
+        } catch (ExecutionException e) {
+            // Duplicates of a failed request see the same failure
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new CompletionException(cause);
+        }
+    }
+
+    private void purge(long now) {
+        // One purger at a time; a request that finds it busy leaves the work to it
+        if (!purging.tryLock()) {
+            return;
+        }
+        try {
+            Entry firstSkipped = null;
+            Entry oldest;
+            while ((oldest = insertionOrder.peek()) != null && oldest != firstSkipped
+                    && (oldest.isExpired(now) || entries.size() > maxKeys || !oldest.isLive())) {
+                insertionOrder.poll();
+                if (oldest.isLive() && !oldest.result.isDone()) {
+                    // Evicting a running request would let a retry with its key run the action
+                    // again, so it goes to the back instead; seeing it again means only running
+                    // requests are left to evict
+                    insertionOrder.offer(oldest);
+                    if (firstSkipped == null) {
+                        firstSkipped = oldest;
+                    }
+                } else {
+                    entries.remove(oldest.key, oldest);
+                }
+            }
+        } finally {
+            purging.unlock();
+        }
+    }
+
+    private final class Entry {
+        private final String key;
+        private final long expiresAt;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        private Entry(String key, long expiresAt) {
+            this.key = key;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt && result.isDone();
+        }
+
+        private boolean isLive() {
+            return entries.get(key) == this;
+        }
+    }
+
+    /**
+     * Result of an idempotent action
+     *
+     * @param <T> Type of the result
+     */
+    public static final class Outcome<T> {
+        private final T result;
+        private final boolean replayed;
+
+        private Outcome(T result, boolean replayed) {
+            this.result = result;
+            this.replayed = replayed;
+        }
+
+        public T getResult() {
+            return result;
+        }
+
+        public boolean isReplayed() {
+            return replayed;
+        }
+    }
+}
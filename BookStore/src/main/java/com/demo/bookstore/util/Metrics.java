@@ -0,0 +1,55 @@
+package com.demo.bookstore.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of named counters and gauges reported by the metrics endpoint
+ */
+public final class Metrics {
+
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Get or create a counter
+     * @param name Metric name
+     * @return Counter registered under the name
+     */
+    public static LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    /**
+     * Register a gauge that is sampled whenever metrics are read
+     * @param name Metric name
+     * @param gauge Supplier of the current value
+     */
+    public static void gauge(String name, LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    /**
+     * Set every counter back to zero, e.g. after a warm-up run; gauges are left alone
+     */
+    public static void resetCounters() {
+        counters.values().forEach(LongAdder::reset);
+    }
+
+    /**
+     * Read every counter and gauge
+     * @return Current values sorted by name
+     */
+    public static Map<String, Long> snapshot() {
+        Map<String, Long> values = new TreeMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+        return values;
+    }
+}
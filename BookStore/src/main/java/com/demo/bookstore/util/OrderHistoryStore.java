@@ -0,0 +1,482 @@
+package com.demo.bookstore.util;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Two-tier order history. Recent orders stay on the heap; once the hot tier reaches
+ * its limit the oldest half is sealed into an append-only segment file that is then
+ * served from a read-only memory map. Each customer has an append-only, time-ordered
+ * index whose entries are either a hot order ID or a (segment, offset) location of a
+ * cold order, so time-range pages are found by binary search.
+ *
+ * Tiering is enabled by setting the {@code bookstore.orders.dir} system property;
+ * {@code bookstore.orders.hotLimit} sets how many orders stay on the heap.
+ * Segments only live as long as the process, so leftovers are cleared on start.
+ */
+public final class OrderHistoryStore {
+
+    private static final Logger LOGGER = Logger.getLogger(OrderHistoryStore.class.getName());
+    private static final String SEGMENT_GLOB = "orders-*.seg";
+    private static final long SEAL_RETRY_MIN_MILLIS = 1000;
+    private static final long SEAL_RETRY_MAX_MILLIS = 60000;
+
+    private final Path directory; // null when tiering is disabled
+    private final int hotLimit;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, PackedOrder> hot = new HashMap<>();
+    // Hot orders oldest first in hotLog[hotStart, hotEnd). Slots are only ever written once,
+    // and the log is copied to a new array when it fills, so snapshots can share it uncopied.
+    private PackedOrder[] hotLog = new PackedOrder[1024];
+    private int hotStart;
+    private int hotEnd;
+    private final List<OrderSegment> segments = new ArrayList<>();
+    private final Map<Integer, CustomerIndex> customers = new HashMap<>();
+    private final ExecutorService sealer;
+    private boolean sealing;
+    // Delay after a failed seal, doubling with each failure and 0 after a success; no seal
+    // starts before sealRetryAt (System.nanoTime)
+    private long sealRetryMillis;
+    private long sealRetryAt;
+
+    public OrderHistoryStore(Path directory, int hotLimit) {
+        this.directory = directory;
+        this.hotLimit = Math.max(2, hotLimit);
+        this.sealer = directory == null ? null : Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "order-segment-sealer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (directory != null) {
+            clearSegments(directory);
+        }
+    }
+
+    /**
+     * Create a store configured from system properties
+     * @return Order history store
+     */
+    public static OrderHistoryStore fromSystemProperties() {
+        String dir = System.getProperty("bookstore.orders.dir");
+        int hotLimit = Integer.getInteger("bookstore.orders.hotLimit", 10000);
+        return new OrderHistoryStore(dir != null && !dir.isBlank() ? Paths.get(dir) : null, hotLimit);
+    }
+
+    /**
+     * Add a newly created order to the hot tier
+     * @param order Order to add
+     */
+    public void append(PackedOrder order) {
+        List<PackedOrder> batch;
+        lock.writeLock().lock();
+        try {
+            batch = addHot(order);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        sealLater(batch);
+    }
+
+    /**
+     * Add orders of a customer handed over by another cluster node. Orders already in the
+     * customer's index are skipped, so a repeated handoff, or that of a customer who was here
+     * before, adds each order once.
+     * @param customerId ID of the customer
+     * @param orders The customer's orders, oldest first
+     * @return Number of orders added
+     */
+    public int importOrders(int customerId, List<PackedOrder> orders) {
+        List<PackedOrder> batch = null;
+        int added = 0;
+        lock.writeLock().lock();
+        try {
+            Set<Integer> known = new HashSet<>();
+            CustomerIndex index = customers.get(customerId);
+            for (int i = 0; index != null && i < index.size; i++) {
+                known.add(resolve(index, i).getId());
+            }
+            for (PackedOrder order : orders) {
+                if (known.add(order.getId())) {
+                    List<PackedOrder> toSeal = addHot(order);
+                    batch = toSeal != null ? toSeal : batch;
+                    added++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        sealLater(batch);
+        return added;
+    }
+
+    // Caller holds the write lock; returns the oldest hot orders to seal once the hot tier is full
+    private List<PackedOrder> addHot(PackedOrder order) {
+        List<PackedOrder> batch = null;
+        hot.put(order.getId(), order);
+        if (hotEnd == hotLog.length) {
+            // Drops sealed orders still in front of hotStart
+            hotLog = Arrays.copyOfRange(hotLog, hotStart, hotStart + Math.max(1024, 2 * (hotEnd - hotStart)));
+            hotEnd -= hotStart;
+            hotStart = 0;
+        }
+        hotLog[hotEnd++] = order;
+        customers.computeIfAbsent(order.getCustomerId(), k -> new CustomerIndex()).add(order.getId(), order.getCreatedAt());
+        if (directory != null && !sealing && hot.size() >= hotLimit
+                && (sealRetryMillis == 0 || System.nanoTime() - sealRetryAt >= 0)) {
+            sealing = true;
+            batch = new ArrayList<>(Arrays.asList(hotLog).subList(hotStart, hotStart + hot.size() / 2));
+        }
+        return batch;
+    }
+
+    private void sealLater(List<PackedOrder> batch) {
+        if (batch != null) {
+            sealer.execute(() -> seal(batch));
+        }
+    }
+
+    /**
+     * Find an order in either tier
+     * @param orderId ID of the order
+     * @return Packed order, or null if not found
+     */
+    public PackedOrder find(int orderId) {
+        lock.readLock().lock();
+        try {
+            PackedOrder order = hot.get(orderId);
+            for (int i = segments.size() - 1; order == null && i >= 0; i--) {
+                order = segments.get(i).find(orderId);
+            }
+            return order;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get all orders of a customer, oldest first, reading across both tiers
+     * @param customerId ID of the customer
+     * @return Packed orders of the customer
+     */
+    public List<PackedOrder> findByCustomer(int customerId) {
+        lock.readLock().lock();
+        try {
+            CustomerIndex index = customers.get(customerId);
+            if (index == null) {
+                return new ArrayList<>();
+            }
+            List<PackedOrder> result = new ArrayList<>(index.size);
+            for (int i = 0; i < index.size; i++) {
+                result.add(resolve(index, i));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get one page of a customer's orders created within a time range, oldest first
+     * @param customerId ID of the customer
+     * @param from Inclusive lower bound of the creation time in epoch milliseconds
+     * @param to Exclusive upper bound of the creation time in epoch milliseconds
+     * @param cursor Index position to resume from, as returned by a previous page, or 0
+     * @param limit Maximum number of orders to return
+     * @return Page of packed orders
+     */
+    public Page findByCustomer(int customerId, long from, long to, int cursor, int limit) {
+        lock.readLock().lock();
+        try {
+            CustomerIndex index = customers.get(customerId);
+            if (index == null) {
+                return new Page(new ArrayList<>(), -1);
+            }
+            int start = Math.max(cursor, index.firstAtOrAfter(from));
+            int end = index.firstAtOrAfter(to);
+            int stop = (int) Math.min(end, (long) start + limit);
+            List<PackedOrder> result = new ArrayList<>(Math.max(0, stop - start));
+            for (int i = start; i < stop; i++) {
+                result.add(resolve(index, i));
+            }
+            return new Page(result, stop < end ? stop : -1);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Take a consistent view of every order in both tiers for bulk scans. The view shares
+     * the hot tier's log rather than copying it, so the lock is only held briefly.
+     * @return Snapshot of the order history
+     */
+    public Snapshot snapshot() {
+        lock.readLock().lock();
+        try {
+            return new Snapshot(Arrays.asList(hotLog).subList(hotStart, hotEnd), new ArrayList<>(segments));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drop a customer's index; their orders stay in the history
+     * @param customerId ID of the customer
+     */
+    public void removeCustomer(int customerId) {
+        lock.writeLock().lock();
+        try {
+            customers.remove(customerId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop every order from both tiers and delete the segment files
+     */
+    public void clear() {
+        if (sealer != null) {
+            // Let a seal in progress finish first, so it cannot add its segment afterwards
+            try {
+                sealer.submit(() -> { }).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                LOGGER.log(Level.WARNING, "Order segment sealer failed", e);
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            hot.clear();
+            hotLog = new PackedOrder[1024];
+            hotStart = 0;
+            hotEnd = 0;
+            segments.clear();
+            customers.clear();
+            sealing = false;
+            sealRetryMillis = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (directory != null) {
+            clearSegments(directory);
+        }
+    }
+
+    public int hotSize() {
+        lock.readLock().lock();
+        try {
+            return hot.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int segmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private PackedOrder resolve(CustomerIndex index, int position) {
+        long entry = index.entries[position];
+        if (position < index.coldCount) {
+            return segments.get((int) (entry >>> 32)).read((int) entry);
+        }
+        return hot.get((int) entry);
+    }
+
+    private void seal(List<PackedOrder> batch) {
+        OrderSegment segment = null;
+        try {
+            int segmentNumber;
+            lock.readLock().lock();
+            try {
+                segmentNumber = segments.size();
+            } finally {
+                lock.readLock().unlock();
+            }
+            Path file = directory.resolve(String.format("orders-%06d.seg", segmentNumber));
+            // Nothing is a segment under this number yet, so a file there is left from a failed attempt
+            Files.deleteIfExists(file);
+            segment = OrderSegment.seal(file, batch);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to seal order segment; keeping orders in memory", e);
+        } finally {
+            finishSeal(batch, segment);
+        }
+    }
+
+    private void finishSeal(List<PackedOrder> batch, OrderSegment segment) {
+        lock.writeLock().lock();
+        try {
+            if (segment != null) {
+                long segmentNumber = segments.size();
+                segments.add(segment);
+                // The batch was the oldest hot orders, and nothing else removes hot orders
+                hotStart += batch.size();
+                for (PackedOrder order : batch) {
+                    hot.remove(order.getId());
+                    CustomerIndex index = customers.get(order.getCustomerId());
+                    if (index != null) {
+                        index.markCold(order.getId(), segmentNumber << 32 | segment.offsetOf(order.getId()));
+                    }
+                }
+                LOGGER.info("Sealed " + batch.size() + " orders into segment " + segmentNumber +
+                           " (" + segment.sizeInBytes() + " bytes)");
+                sealRetryMillis = 0;
+            } else {
+                // Retrying on every append would fail the same way and flood the log
+                sealRetryMillis = sealRetryMillis == 0 ? SEAL_RETRY_MIN_MILLIS : Math.min(SEAL_RETRY_MAX_MILLIS, sealRetryMillis * 2);
+                sealRetryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sealRetryMillis);
+                LOGGER.warning("Next order segment seal attempt in " + sealRetryMillis + " ms");
+            }
+        } finally {
+            sealing = false;
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void clearSegments(Path directory) {
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> stale = Files.newDirectoryStream(directory, SEGMENT_GLOB)) {
+                for (Path file : stale) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot prepare order segment directory " + directory, e);
+        }
+    }
+
+    /**
+     * One page of a customer's order history
+     */
+    public static final class Page {
+        private final List<PackedOrder> orders;
+        private final int nextCursor;
+
+        Page(List<PackedOrder> orders, int nextCursor) {
+            this.orders = orders;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<PackedOrder> getOrders() {
+            return orders;
+        }
+
+        /**
+         * @return Cursor of the next page, or -1 if this is the last page
+         */
+        public int getNextCursor() {
+            return nextCursor;
+        }
+    }
+
+    /**
+     * Point-in-time view of the order history addressable by position, so a scan
+     * can be split into ranges. Cold orders are read from the mapped segments.
+     */
+    public static final class Snapshot {
+        private final List<PackedOrder> hotOrders;
+        private final List<OrderSegment> coldSegments;
+        private final int[] segmentStarts;
+        private final int size;
+
+        Snapshot(List<PackedOrder> hotOrders, List<OrderSegment> coldSegments) {
+            this.hotOrders = hotOrders;
+            this.coldSegments = coldSegments;
+            this.segmentStarts = new int[coldSegments.size()];
+            int position = 0;
+            for (int i = 0; i < coldSegments.size(); i++) {
+                segmentStarts[i] = position;
+                position += coldSegments.get(i).size();
+            }
+            this.size = position + hotOrders.size();
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Get the order at a position; cold orders come first
+         * @param position Position between 0 and {@link #size()} - 1
+         * @return Packed order
+         */
+        public PackedOrder get(int position) {
+            int coldSize = size - hotOrders.size();
+            if (position >= coldSize) {
+                return hotOrders.get(position - coldSize);
+            }
+            int segment = Arrays.binarySearch(segmentStarts, position);
+            if (segment < 0) {
+                segment = -segment - 2;
+            }
+            return coldSegments.get(segment).orderAt(position - segmentStarts[segment]);
+        }
+    }
+
+    /**
+     * Per-customer order index, oldest first. Entries before {@code coldCount} are
+     * segment locations (segment number << 32 | offset); the rest are hot order IDs.
+     * Sealing always takes the oldest orders, so cold entries form a prefix.
+     * Creation times are kept non-decreasing so the index can be binary searched.
+     */
+    private static final class CustomerIndex {
+        long[] entries = new long[4];
+        long[] times = new long[4];
+        int size;
+        int coldCount;
+
+        void add(int orderId, long createdAt) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+                times = Arrays.copyOf(times, size * 2);
+            }
+            times[size] = size > 0 ? Math.max(createdAt, times[size - 1]) : createdAt;
+            entries[size++] = orderId;
+        }
+
+        int firstAtOrAfter(long time) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (times[mid] < time) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        void markCold(int orderId, long location) {
+            if (coldCount < size && entries[coldCount] == orderId) {
+                entries[coldCount++] = location;
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.demo.bookstore.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Sealed, append-only file of packed orders served from a read-only memory map.
+ * Layout: the encoded orders, then (orderId, offset) pairs sorted by order ID,
+ * then the number of orders in the segment.
+ */
+public final class OrderSegment {
+    private final MappedByteBuffer buffer;
+    private final int count;
+    private final int indexStart;
+    private final int minOrderId;
+    private final int maxOrderId;
+
+    private OrderSegment(MappedByteBuffer buffer) {
+        this.buffer = buffer;
+        this.count = buffer.getInt(buffer.limit() - Integer.BYTES);
+        this.indexStart = buffer.limit() - Integer.BYTES - count * 2 * Integer.BYTES;
+        this.minOrderId = count > 0 ? buffer.getInt(indexStart) : 0;
+        this.maxOrderId = count > 0 ? buffer.getInt(indexStart + (count - 1) * 2 * Integer.BYTES) : -1;
+    }
+
+    /**
+     * Write orders to a new segment file and map it read-only
+     * @param file Path of the segment file to create
+     * @param orders Orders to seal, oldest first
+     * @return Mapped segment
+     * @throws IOException if the file cannot be written or mapped
+     */
+    public static OrderSegment seal(Path file, List<PackedOrder> orders) throws IOException {
+        int dataBytes = 0;
+        for (PackedOrder order : orders) {
+            dataBytes += order.encodedSize();
+        }
+        long[] index = new long[orders.size()]; // orderId << 32 | offset, sorted by orderId
+        ByteBuffer out = ByteBuffer.allocate(dataBytes + orders.size() * 2 * Integer.BYTES + Integer.BYTES);
+        for (int i = 0; i < orders.size(); i++) {
+            PackedOrder order = orders.get(i);
+            index[i] = ((long) order.getId() << 32) | out.position();
+            order.writeTo(out);
+        }
+        Arrays.sort(index);
+        for (long entry : index) {
+            out.putInt((int) (entry >>> 32));
+            out.putInt((int) entry);
+        }
+        out.putInt(orders.size());
+        out.flip();
+
+        FileChannel created = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE, StandardOpenOption.READ);
+        try (FileChannel channel = created) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+            channel.force(true);
+            return new OrderSegment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } catch (IOException | RuntimeException e) {
+            // A partial file would make a retry under the same name fail
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Read an order straight from the mapped file
+     * @param offset Offset of the order within the segment
+     * @return Packed order
+     */
+    public PackedOrder read(int offset) {
+        return PackedOrder.readFrom(buffer, offset);
+    }
+
+    /**
+     * Read the order at a position of the segment's index
+     * @param position Position between 0 and {@link #size()} - 1, in order ID order
+     * @return Packed order
+     */
+    public PackedOrder orderAt(int position) {
+        return read(buffer.getInt(indexStart + position * 2 * Integer.BYTES + Integer.BYTES));
+    }
+
+    /**
+     * Find an order by ID using the segment's sorted index
+     * @param orderId ID of the order
+     * @return Packed order, or null if this segment does not hold it
+     */
+    public PackedOrder find(int orderId) {
+        int offset = offsetOf(orderId);
+        return offset >= 0 ? read(offset) : null;
+    }
+
+    /**
+     * Look up the offset of an order in this segment
+     * @param orderId ID of the order
+     * @return Offset of the order, or -1 if this segment does not hold it
+     */
+    public int offsetOf(int orderId) {
+        if (orderId < minOrderId || orderId > maxOrderId) {
+            return -1;
+        }
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = indexStart + mid * 2 * Integer.BYTES;
+            int id = buffer.getInt(entry);
+            if (id < orderId) {
+                low = mid + 1;
+            } else if (id > orderId) {
+                high = mid - 1;
+            } else {
+                return buffer.getInt(entry + Integer.BYTES);
+            }
+        }
+        return -1;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public long sizeInBytes() {
+        return buffer.limit();
+    }
+}
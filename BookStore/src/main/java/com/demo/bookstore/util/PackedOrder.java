@@ -0,0 +1,149 @@
+package com.demo.bookstore.util;
+
+import com.demo.bookstore.model.CartItem;
+import com.demo.bookstore.model.Order;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact, immutable encoding of an Order held in the order history.
+ * Line items are packed into one int array of (bookId, quantity, unit price in cents)
+ * triples and the total is kept in fixed-point cents; the Order object is only decoded
+ * when served. The unit price is the price paid, so history does not follow catalog changes.
+ */
+public final class PackedOrder {
+    private final int id;
+    private final int customerId;
+    private final long totalCents;
+    private final long createdAt;
+    private final int[] lines; // bookId, quantity, unitPriceCents, bookId, quantity, ...
+
+    private static final int LINE_STRIDE = 3;
+
+    // id, customerId, totalCents, createdAt, line array length
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 4;
+
+    PackedOrder(int id, int customerId, long totalCents, long createdAt, int[] lines) {
+        this.id = id;
+        this.customerId = customerId;
+        this.totalCents = totalCents;
+        this.createdAt = createdAt;
+        this.lines = lines;
+    }
+
+    /**
+     * Pack order data into its compact form
+     * @param id ID of the order
+     * @param customerId ID of the customer who placed the order
+     * @param items Line items of the order
+     * @param unitPrices Price paid per unit for each line item
+     * @param totalPrice Total price of the order
+     * @param createdAt Creation time in epoch milliseconds
+     * @return Packed order
+     */
+    public static PackedOrder pack(int id, int customerId, List<CartItem> items, double[] unitPrices,
+                                   double totalPrice, long createdAt) {
+        int[] lines = new int[items.size() * LINE_STRIDE];
+        int i = 0;
+        for (int line = 0; line < items.size(); line++) {
+            CartItem item = items.get(line);
+            lines[i++] = item.getBookId();
+            lines[i++] = item.getQuantity();
+            lines[i++] = Math.toIntExact(toCents(unitPrices[line]));
+        }
+        return new PackedOrder(id, customerId, toCents(totalPrice), createdAt, lines);
+    }
+
+    /**
+     * Decode this order into a fresh Order object
+     * @return Order equivalent to the packed data
+     */
+    public Order toOrder() {
+        List<CartItem> items = new ArrayList<>(lineCount());
+        for (int i = 0; i < lines.length; i += LINE_STRIDE) {
+            items.add(new CartItem(lines[i], lines[i + 1]));
+        }
+        return new Order(id, customerId, items, totalCents / 100.0, createdAt);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getCustomerId() {
+        return customerId;
+    }
+
+    public long getTotalCents() {
+        return totalCents;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public int lineCount() {
+        return lines.length / LINE_STRIDE;
+    }
+
+    public int bookIdAt(int line) {
+        return lines[line * LINE_STRIDE];
+    }
+
+    public int quantityAt(int line) {
+        return lines[line * LINE_STRIDE + 1];
+    }
+
+    public int unitPriceCentsAt(int line) {
+        return lines[line * LINE_STRIDE + 2];
+    }
+
+    /**
+     * Number of bytes this order occupies in a segment file
+     * @return Encoded size in bytes
+     */
+    public int encodedSize() {
+        return HEADER_BYTES + lines.length * Integer.BYTES;
+    }
+
+    /**
+     * Write this order at the buffer's current position
+     * @param buffer Buffer to write to
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(id);
+        buffer.putInt(customerId);
+        buffer.putLong(totalCents);
+        buffer.putLong(createdAt);
+        buffer.putInt(lines.length);
+        for (int value : lines) {
+            buffer.putInt(value);
+        }
+    }
+
+    /**
+     * Read an order at an absolute offset without moving the buffer's position,
+     * so one mapped buffer can be shared by concurrent readers
+     * @param buffer Buffer to read from
+     * @param offset Offset of the encoded order
+     * @return Packed order
+     */
+    public static PackedOrder readFrom(ByteBuffer buffer, int offset) {
+        int id = buffer.getInt(offset);
+        int customerId = buffer.getInt(offset + 4);
+        long totalCents = buffer.getLong(offset + 8);
+        long createdAt = buffer.getLong(offset + 16);
+        int[] lines = new int[buffer.getInt(offset + 24)];
+        int position = offset + HEADER_BYTES;
+        for (int i = 0; i < lines.length; i++, position += Integer.BYTES) {
+            lines[i] = buffer.getInt(position);
+        }
+        return new PackedOrder(id, customerId, totalCents, createdAt, lines);
+    }
+
+    static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+}
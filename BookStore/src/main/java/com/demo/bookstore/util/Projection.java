@@ -0,0 +1,182 @@
+package com.demo.bookstore.util;
+
+import com.demo.bookstore.exception.InvalidInputException;
+import com.demo.bookstore.model.LookupResult;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writer for a sparse fieldset of an entity, as requested with {@code ?fields=}. Each
+ * entity type declares its fields once as a {@link Schema} of accessor-based writers;
+ * a projection is the chosen subset in schema order with pre-encoded field names, and is
+ * cached per distinct selection, so serializing uses no reflection and no per-request setup.
+ * Projections are written by {@link com.demo.bookstore.provider.ProjectionWriter} in the
+ * negotiated format.
+ *
+ * @param <T> Type of the projected entity
+ */
+public final class Projection<T> {
+
+    private final SerializableString[] names;
+    private final FieldWriter<T>[] writers;
+
+    private Projection(SerializableString[] names, FieldWriter<T>[] writers) {
+        this.names = names;
+        this.writers = writers;
+    }
+
+    /**
+     * @param entity Entity to write
+     * @return Output writing the entity's selected fields as an object
+     */
+    public Output of(T entity) {
+        return generator -> write(generator, entity);
+    }
+
+    /**
+     * @param entities Entities to write
+     * @return Output writing the entities' selected fields as an array of objects
+     */
+    public Output ofAll(Collection<? extends T> entities) {
+        return generator -> {
+            generator.writeStartArray();
+            for (T entity : entities) {
+                write(generator, entity);
+            }
+            generator.writeEndArray();
+        };
+    }
+
+    /**
+     * @param results Results of a batch lookup
+     * @return Output writing each result with the selected fields of its entity
+     */
+    public Output ofLookups(List<LookupResult<T>> results) {
+        return generator -> {
+            generator.writeStartArray();
+            for (LookupResult<T> result : results) {
+                generator.writeStartObject();
+                generator.writeNumberField("id", result.getId());
+                generator.writeBooleanField("found", result.isFound());
+                generator.writeFieldName("entity");
+                if (result.isFound()) {
+                    write(generator, result.getEntity());
+                } else {
+                    generator.writeNull();
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        };
+    }
+
+    private void write(JsonGenerator generator, T entity) throws IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < writers.length; i++) {
+            generator.writeFieldName(names[i]);
+            writers[i].write(generator, entity);
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Projected response entity, written to a generator of the negotiated format
+     */
+    @FunctionalInterface
+    public interface Output {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    /**
+     * Writes one field's value
+     *
+     * @param <T> Type of the entity
+     */
+    @FunctionalInterface
+    public interface FieldWriter<T> {
+        void write(JsonGenerator generator, T entity) throws IOException;
+    }
+
+    /**
+     * All fields of an entity type that can be selected, with their projections cached
+     *
+     * @param <T> Type of the entity
+     */
+    public static final class Schema<T> {
+        private static final int MAX_CACHED = 256;
+
+        private final String entity;
+        private final Map<String, FieldWriter<T>> fields = new LinkedHashMap<>();
+        private final Map<String, Projection<T>> cache = new ConcurrentHashMap<>();
+
+        public Schema(String entity) {
+            this.entity = entity;
+        }
+
+        /**
+         * Declare a selectable field; fields are written in declaration order
+         * @param name JSON property name
+         * @param writer Writer of the field's value
+         * @return This schema
+         */
+        public Schema<T> field(String name, FieldWriter<T> writer) {
+            fields.put(name, writer);
+            return this;
+        }
+
+        /**
+         * Get the projection for a {@code fields} parameter
+         * @param selection Comma-separated field names
+         * @return Cached projection of the selected fields
+         * @throws InvalidInputException if a field is unknown or none are given
+         */
+        public Projection<T> select(String selection) {
+            Projection<T> projection = cache.get(selection);
+            if (projection != null) {
+                return projection;
+            }
+            projection = build(selection);
+            if (cache.size() < MAX_CACHED) {
+                cache.putIfAbsent(selection, projection);
+            }
+            return projection;
+        }
+
+        private Projection<T> build(String selection) {
+            List<String> selected = new ArrayList<>();
+            for (String name : selection.split(",")) {
+                String trimmed = name.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                if (!fields.containsKey(trimmed)) {
+                    throw new InvalidInputException("Unknown " + entity + " field '" + trimmed + "'; valid fields are " + fields.keySet());
+                }
+                selected.add(trimmed);
+            }
+            if (selected.isEmpty()) {
+                throw new InvalidInputException("At least one " + entity + " field must be selected");
+            }
+            List<SerializableString> names = new ArrayList<>();
+            List<FieldWriter<T>> writers = new ArrayList<>();
+            for (Map.Entry<String, FieldWriter<T>> field : fields.entrySet()) {
+                if (selected.contains(field.getKey())) {
+                    names.add(new SerializedString(field.getKey()));
+                    writers.add(field.getValue());
+                }
+            }
+            @SuppressWarnings("unchecked")
+            FieldWriter<T>[] selectedWriters = writers.toArray((FieldWriter<T>[]) new FieldWriter<?>[0]);
+            return new Projection<>(names.toArray(new SerializableString[0]), selectedWriters);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.demo.bookstore.util;
+
+import com.demo.bookstore.model.Author;
+import com.demo.bookstore.model.Book;
+import com.demo.bookstore.model.CartItem;
+import com.demo.bookstore.model.Customer;
+import com.demo.bookstore.model.Order;
+
+/**
+ * Selectable fields of each entity returned by the API, matching their full JSON form
+ */
+public final class Projections {
+
+    public static final Projection.Schema<Book> BOOK = new Projection.Schema<Book>("book")
+            .field("id", (g, b) -> g.writeNumber(b.getId()))
+            .field("title", (g, b) -> g.writeString(b.getTitle()))
+            .field("authorId", (g, b) -> g.writeNumber(b.getAuthorId()))
+            .field("isbn", (g, b) -> g.writeString(b.getIsbn()))
+            .field("publicationYear", (g, b) -> g.writeNumber(b.getPublicationYear()))
+            .field("price", (g, b) -> g.writeNumber(b.getPrice()))
+            .field("stock", (g, b) -> g.writeNumber(b.getStock()));
+
+    public static final Projection.Schema<Author> AUTHOR = new Projection.Schema<Author>("author")
+            .field("id", (g, a) -> g.writeNumber(a.getId()))
+            .field("firstName", (g, a) -> g.writeString(a.getFirstName()))
+            .field("lastName", (g, a) -> g.writeString(a.getLastName()))
+            .field("biography", (g, a) -> g.writeString(a.getBiography()))
+            .field("fullName", (g, a) -> g.writeString(a.getFullName()));
+
+    public static final Projection.Schema<Customer> CUSTOMER = new Projection.Schema<Customer>("customer")
+            .field("id", (g, c) -> g.writeNumber(c.getId()))
+            .field("firstName", (g, c) -> g.writeString(c.getFirstName()))
+            .field("lastName", (g, c) -> g.writeString(c.getLastName()))
+            .field("email", (g, c) -> g.writeString(c.getEmail()))
+            .field("password", (g, c) -> g.writeString(c.getPassword()))
+            .field("fullName", (g, c) -> g.writeString(c.getFullName()));
+
+    public static final Projection.Schema<Order> ORDER = new Projection.Schema<Order>("order")
+            .field("id", (g, o) -> g.writeNumber(o.getId()))
+            .field("customerId", (g, o) -> g.writeNumber(o.getCustomerId()))
+            .field("items", (g, o) -> {
+                if (o.getItems() == null) {
+                    g.writeNull();
+                    return;
+                }
+                g.writeStartArray();
+                for (CartItem item : o.getItems()) {
+                    g.writeStartObject();
+                    g.writeNumberField("bookId", item.getBookId());
+                    g.writeNumberField("quantity", item.getQuantity());
+                    g.writeEndObject();
+                }
+                g.writeEndArray();
+            })
+            .field("totalPrice", (g, o) -> g.writeNumber(o.getTotalPrice()))
+            .field("createdAt", (g, o) -> g.writeNumber(o.getCreatedAt()));
+
+    private Projections() {
+    }
+}
@@ -0,0 +1,73 @@
+package com.demo.bookstore.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free per-key token bucket, implemented as a generic cell rate algorithm: each key
+ * keeps only its theoretical arrival time in an {@link AtomicLong}, and a request is
+ * admitted with one compare-and-set if it does not arrive earlier than the burst allows.
+ * Keys whose bucket has refilled completely are swept once the map grows past its limit.
+ */
+public final class RateLimiter {
+
+    private final long emissionNanos;
+    private final long burstNanos;
+    private final int maxKeys;
+    private final Map<String, AtomicLong> arrivals = new ConcurrentHashMap<>();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    /**
+     * @param ratePerSecond Sustained number of requests per second per key
+     * @param burst Number of requests a key may send at once after being idle
+     * @param maxKeys Number of tracked keys above which idle keys are swept
+     */
+    public RateLimiter(double ratePerSecond, int burst, int maxKeys) {
+        this.emissionNanos = (long) (1_000_000_000L / ratePerSecond);
+        this.burstNanos = emissionNanos * Math.max(0, burst - 1);
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Try to admit one request for a key
+     * @param key Key the request is charged to
+     * @param nowNanos Current {@link System#nanoTime()}
+     * @return 0 if the request is admitted, otherwise the nanoseconds until it would be
+     */
+    public long tryAcquire(String key, long nowNanos) {
+        AtomicLong arrival = arrivals.get(key);
+        if (arrival == null) {
+            arrival = arrivals.computeIfAbsent(key, k -> new AtomicLong(nowNanos));
+            if (arrivals.size() > maxKeys) {
+                sweep(nowNanos);
+            }
+        }
+        while (true) {
+            long tat = arrival.get();
+            long earliest = tat - burstNanos;
+            if (nowNanos - earliest < 0) {
+                return earliest - nowNanos;
+            }
+            long next = Math.max(tat, nowNanos) + emissionNanos;
+            if (arrival.compareAndSet(tat, next)) {
+                return 0;
+            }
+        }
+    }
+
+    public int size() {
+        return arrivals.size();
+    }
+
+    private void sweep(long nowNanos) {
+        if (sweeping.compareAndSet(false, true)) {
+            try {
+                arrivals.values().removeIf(arrival -> arrival.get() - nowNanos <= 0);
+            } finally {
+                sweeping.set(false);
+            }
+        }
+    }
+}
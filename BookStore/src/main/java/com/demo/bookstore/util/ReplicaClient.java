@@ -0,0 +1,145 @@
+package com.demo.bookstore.util;
+
+import com.demo.bookstore.model.ReplicationMessage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Replica side of catalog replication. Connects to the primary named by
+ * {@code bookstore.replicaOf}, applies its snapshot and then its stream of changes to the
+ * local {@link DataStore}, and reconnects from the last applied position if the connection
+ * drops. Lag is reported as the {@code replication.lagMillis} metric.
+ */
+public final class ReplicaClient {
+
+    private static final Logger LOGGER = Logger.getLogger(ReplicaClient.class.getName());
+    private static final String PRIMARY = System.getProperty("bookstore.replicaOf");
+    private static final long RECONNECT_MILLIS = 1000;
+
+    private static final LongAdder snapshotsApplied = Metrics.counter("replication.snapshotsApplied");
+    private static final LongAdder changesApplied = Metrics.counter("replication.changesApplied");
+    private static volatile long epoch;
+    private static volatile long appliedSequence = -1;
+    private static volatile long lastSentAt; // primary's send time of the latest message applied
+    private static volatile long lastLagMillis;
+    private static volatile boolean connected;
+
+    private ReplicaClient() {
+    }
+
+    /**
+     * @return True if this server is a read-only replica
+     */
+    public static boolean isReplica() {
+        return PRIMARY != null;
+    }
+
+    /**
+     * @return True once the first snapshot from the primary has been applied
+     */
+    public static boolean isSynced() {
+        return epoch != 0;
+    }
+
+    /**
+     * Start following the primary, if {@code bookstore.replicaOf} is set
+     */
+    public static void startFromSystemProperties() {
+        if (PRIMARY == null) {
+            return;
+        }
+        int colon = PRIMARY.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IllegalArgumentException("bookstore.replicaOf must be host:port, was " + PRIMARY);
+        }
+        String host = PRIMARY.substring(0, colon);
+        int port = Integer.parseInt(PRIMARY.substring(colon + 1));
+
+        Metrics.gauge("replication.appliedSequence", () -> appliedSequence);
+        Metrics.gauge("replication.connected", () -> connected ? 1 : 0);
+        Metrics.gauge("replication.lagMillis", ReplicaClient::lagMillis);
+
+        Thread follower = new Thread(() -> {
+            while (true) {
+                follow(host, port);
+                try {
+                    Thread.sleep(RECONNECT_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "replica-follower");
+        follower.setDaemon(true);
+        follower.start();
+    }
+
+    /**
+     * @return Time between the primary sending the latest change and this replica applying
+     *         it, growing while the primary is silent beyond its heartbeat; -1 before the first sync
+     */
+    static long lagMillis() {
+        if (lastSentAt == 0) {
+            return -1;
+        }
+        long silence = System.currentTimeMillis() - lastSentAt - ReplicationServer.HEARTBEAT_MILLIS;
+        return Math.max(lastLagMillis, silence);
+    }
+
+    private static void follow(String host, int port) {
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            ReplicationMessage hello = new ReplicationMessage();
+            hello.setType(ReplicationServer.HELLO);
+            hello.setEpoch(epoch);
+            hello.setSequence(appliedSequence);
+            OutputStream out = socket.getOutputStream();
+            out.write(ReplicationServer.MAPPER.writeValueAsBytes(hello));
+            out.write('\n');
+            out.flush();
+            connected = true;
+            LOGGER.info("Following primary " + PRIMARY + " from position " + appliedSequence);
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                apply(ReplicationServer.MAPPER.readValue(line, ReplicationMessage.class));
+            }
+            LOGGER.warning("Primary " + PRIMARY + " closed the replication connection");
+        } catch (IOException e) {
+            LOGGER.warning("Replication from primary " + PRIMARY + " failed: " + e.getMessage());
+        } finally {
+            connected = false;
+        }
+    }
+
+    private static void apply(ReplicationMessage message) {
+        switch (message.getType()) {
+            case ReplicationServer.SNAPSHOT:
+                DataStore.applyReplicationSnapshot(message.getBooks(), message.getAuthors());
+                epoch = message.getEpoch();
+                snapshotsApplied.increment();
+                LOGGER.info("Applied snapshot of " + message.getBooks().size() + " books and "
+                        + message.getAuthors().size() + " authors at position " + message.getSequence());
+                break;
+            case ReplicationServer.CHANGE:
+                if (ReplicationLog.BOOK.equals(message.getEntity())) {
+                    DataStore.applyReplicatedBook(message.getEntityId(), message.getBook());
+                } else {
+                    DataStore.applyReplicatedAuthor(message.getEntityId(), message.getAuthor());
+                }
+                changesApplied.increment();
+                break;
+            default:
+                break; // heartbeat
+        }
+        appliedSequence = message.getSequence();
+        lastSentAt = message.getTimestamp();
+        lastLagMillis = Math.max(0, System.currentTimeMillis() - message.getTimestamp());
+    }
+}
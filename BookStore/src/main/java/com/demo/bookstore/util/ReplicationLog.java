@@ -0,0 +1,122 @@
+package com.demo.bookstore.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Ordered log of catalog mutations shipped to read replicas. Every mutation gets the next
+ * sequence number and carries the entity's full new state, so applying a mutation twice,
+ * or on top of a snapshot that already includes it, gives the same result. The most recent
+ * mutations are kept in a fixed-size ring; a replica that falls further behind resyncs
+ * from a snapshot.
+ */
+public final class ReplicationLog {
+
+    public static final String BOOK = "book";
+    public static final String AUTHOR = "author";
+
+    private final Entry[] entries;
+    private long sequence; // sequence of the latest mutation, 0 before the first
+
+    /**
+     * @param retention Number of most recent mutations kept
+     */
+    public ReplicationLog(int retention) {
+        this.entries = new Entry[Math.max(1, retention)];
+    }
+
+    /**
+     * Record a mutation; must be called while the mutation is applied, so the log has the
+     * same order as the store
+     * @param entity Entity type, {@link #BOOK} or {@link #AUTHOR}
+     * @param entityId ID of the entity
+     * @param state New state of the entity, or null if it was deleted
+     */
+    public synchronized void record(String entity, int entityId, Object state) {
+        long next = ++sequence;
+        entries[(int) (next % entries.length)] = new Entry(next, entity, entityId, state);
+        notifyAll();
+    }
+
+    /**
+     * Forget every mutation and start again from sequence 0
+     */
+    public synchronized void clear() {
+        Arrays.fill(entries, null);
+        sequence = 0;
+    }
+
+    public synchronized long sequence() {
+        return sequence;
+    }
+
+    /**
+     * Get the mutations after a sequence number
+     * @param after Sequence the caller has applied
+     * @param max Maximum number of mutations to return
+     * @return Mutations in order, or null if those after {@code after} are no longer retained
+     */
+    public synchronized List<Entry> since(long after, int max) {
+        if (after < sequence - entries.length || after > sequence) {
+            return null;
+        }
+        List<Entry> found = new ArrayList<>((int) Math.min(max, sequence - after));
+        for (long s = after + 1; s <= sequence && found.size() < max; s++) {
+            found.add(entries[(int) (s % entries.length)]);
+        }
+        return found;
+    }
+
+    /**
+     * Wait until there is a mutation after a sequence number
+     * @param after Sequence the caller has applied
+     * @param timeoutMillis Longest time to wait
+     * @return True if there is a newer mutation
+     */
+    public synchronized boolean awaitAfter(long after, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        long remaining = timeoutMillis;
+        while (sequence <= after && remaining > 0) {
+            wait(remaining);
+            remaining = deadline - System.currentTimeMillis();
+        }
+        return sequence > after;
+    }
+
+    /**
+     * One mutation
+     */
+    public static final class Entry {
+        private final long sequence;
+        private final String entity;
+        private final int entityId;
+        private final Object state;
+
+        private Entry(long sequence, String entity, int entityId, Object state) {
+            this.sequence = sequence;
+            this.entity = entity;
+            this.entityId = entityId;
+            this.state = state;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public String getEntity() {
+            return entity;
+        }
+
+        public int getEntityId() {
+            return entityId;
+        }
+
+        /**
+         * @return New state of the entity, or null if it was deleted
+         */
+        public Object getState() {
+            return state;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.demo.bookstore.util;
+
+import com.demo.bookstore.model.Author;
+import com.demo.bookstore.model.Book;
+import com.demo.bookstore.model.ReplicationMessage;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Primary side of catalog replication. Replicas connect over TCP and say which log position
+ * they have applied; each gets a snapshot of the catalog if it is new or too far behind,
+ * then every book and author mutation from the {@link ReplicationLog} in order, with a
+ * heartbeat whenever nothing changes for a second. Messages are JSON, one per line.
+ */
+public final class ReplicationServer {
+
+    private static final Logger LOGGER = Logger.getLogger(ReplicationServer.class.getName());
+
+    public static final String HELLO = "hello";
+    public static final String SNAPSHOT = "snapshot";
+    public static final String CHANGE = "change";
+    public static final String HEARTBEAT = "heartbeat";
+    static final long HEARTBEAT_MILLIS = 1000;
+    static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private static final int MAX_BATCH = 1000;
+    private static final long EPOCH = System.currentTimeMillis();
+    private static final AtomicInteger replicas = new AtomicInteger();
+    private static final LongAdder snapshotsSent = Metrics.counter("replication.snapshotsSent");
+    private static final LongAdder changesSent = Metrics.counter("replication.changesSent");
+
+    private ReplicationServer() {
+    }
+
+    /**
+     * @return Log to record catalog mutations in if {@code bookstore.replication.port} is set, else null
+     */
+    static ReplicationLog logFromSystemProperties() {
+        if (Integer.getInteger("bookstore.replication.port") == null) {
+            return null;
+        }
+        return new ReplicationLog(Integer.getInteger("bookstore.replication.retention", 10000));
+    }
+
+    /**
+     * Start accepting replicas on {@code bookstore.replication.port}, if set
+     */
+    public static void startFromSystemProperties() {
+        Integer port = Integer.getInteger("bookstore.replication.port");
+        if (port == null) {
+            return;
+        }
+        ServerSocket serverSocket;
+        try {
+            serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to listen for replicas on port " + port, e);
+        }
+        Metrics.gauge("replication.replicas", replicas::get);
+        Metrics.gauge("replication.sequence", () -> DataStore.getReplicationLog().sequence());
+
+        Thread acceptor = new Thread(() -> {
+            AtomicInteger connections = new AtomicInteger();
+            while (true) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    Thread sender = new Thread(() -> serve(socket), "replication-sender-" + connections.incrementAndGet());
+                    sender.setDaemon(true);
+                    sender.start();
+                } catch (IOException e) {
+                    LOGGER.warning("Failed to accept replica: " + e.getMessage());
+                }
+            }
+        }, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        LOGGER.info("Accepting replicas on port " + port);
+    }
+
+    private static void serve(Socket socket) {
+        String replica = socket.getRemoteSocketAddress().toString();
+        replicas.incrementAndGet();
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            String line = in.readLine();
+            if (line == null) {
+                return;
+            }
+            ReplicationMessage hello = MAPPER.readValue(line, ReplicationMessage.class);
+            ReplicationLog log = DataStore.getReplicationLog();
+            // A replica of another primary, or of this one before a restart, starts over
+            long position = hello.getEpoch() == EPOCH ? hello.getSequence() : -1;
+            LOGGER.info("Replica " + replica + " connected at position " + position);
+
+            while (true) {
+                List<ReplicationLog.Entry> entries = position < 0 ? null : log.since(position, MAX_BATCH);
+                if (entries == null) {
+                    ReplicationMessage snapshot = DataStore.replicationSnapshot();
+                    send(out, snapshot);
+                    out.flush();
+                    position = snapshot.getSequence();
+                    snapshotsSent.increment();
+                    LOGGER.info("Sent snapshot of " + snapshot.getBooks().size() + " books and "
+                            + snapshot.getAuthors().size() + " authors at position " + position + " to replica " + replica);
+                    continue;
+                }
+                for (ReplicationLog.Entry entry : entries) {
+                    send(out, change(entry));
+                    position = entry.getSequence();
+                }
+                if (!entries.isEmpty()) {
+                    out.flush();
+                    changesSent.add(entries.size());
+                } else if (!log.awaitAfter(position, HEARTBEAT_MILLIS)) {
+                    ReplicationMessage heartbeat = new ReplicationMessage();
+                    heartbeat.setType(HEARTBEAT);
+                    heartbeat.setSequence(position);
+                    send(out, heartbeat);
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.info("Replica " + replica + " disconnected: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            replicas.decrementAndGet();
+        }
+    }
+
+    private static ReplicationMessage change(ReplicationLog.Entry entry) {
+        ReplicationMessage change = new ReplicationMessage();
+        change.setType(CHANGE);
+        change.setSequence(entry.getSequence());
+        change.setEntity(entry.getEntity());
+        change.setEntityId(entry.getEntityId());
+        if (entry.getState() instanceof Book book) {
+            change.setBook(book);
+        } else if (entry.getState() instanceof Author author) {
+            change.setAuthor(author);
+        }
+        return change;
+    }
+
+    private static void send(OutputStream out, ReplicationMessage message) throws IOException {
+        message.setEpoch(EPOCH);
+        message.setTimestamp(System.currentTimeMillis());
+        out.write(MAPPER.writeValueAsBytes(message));
+        out.write('\n');
+    }
+}
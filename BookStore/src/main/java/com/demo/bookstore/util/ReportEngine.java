@@ -0,0 +1,375 @@
+package com.demo.bookstore.util;
+
+import com.demo.bookstore.exception.InvalidInputException;
+import com.demo.bookstore.exception.ReportTimeoutException;
+import com.demo.bookstore.model.Book;
+import com.demo.bookstore.model.ReportQuery;
+import com.demo.bookstore.model.ReportResult;
+import com.demo.bookstore.model.ReportRow;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs ad-hoc filter/group/aggregate reports over the order history joined to the catalog.
+ * Scans are split into ranges on a dedicated fork-join pool so they never run on the
+ * request threads, and every report is cancelled once its time budget is spent.
+ */
+public final class ReportEngine {
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 2000;
+    public static final long MAX_TIMEOUT_MILLIS = 10000;
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 10000;
+    private static final int MAX_GROUP_BY = 2;
+    private static final int MAX_CONCURRENT_REPORTS = 2;
+    private static final int LEAF_SIZE = 4096;
+    private static final int DEADLINE_CHECK_MASK = 1023;
+
+    private static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private static final Semaphore permits = new Semaphore(MAX_CONCURRENT_REPORTS);
+
+    /**
+     * Dimensions a report can be grouped by
+     */
+    private enum Dimension {
+        AUTHOR("author"),
+        BOOK("book"),
+        CUSTOMER("customer"),
+        DECADE("decade"),
+        YEAR("year");
+
+        private final String label;
+
+        Dimension(String label) {
+            this.label = label;
+        }
+
+        static Dimension fromLabel(String label) {
+            for (Dimension dimension : values()) {
+                if (dimension.label.equals(label)) {
+                    return dimension;
+                }
+            }
+            return null;
+        }
+    }
+
+    private ReportEngine() {
+    }
+
+    /**
+     * Run a report within its time budget
+     * @param query Report query
+     * @return Report rows ordered by revenue, with scan statistics
+     */
+    public static ReportResult run(ReportQuery query) {
+        if (!permits.tryAcquire()) {
+            throw new ReportTimeoutException("Too many reports are running; try again shortly");
+        }
+        long started = System.nanoTime();
+        try {
+            Scan scan = new Scan(query);
+            ForkJoinTask<Map<Long, long[]>> task = pool.submit(new ScanTask(scan, 0, scan.orders.size()));
+            Map<Long, long[]> groups;
+            try {
+                groups = task.get(scan.deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException | CancellationException e) {
+                scan.cancelled.set(true);
+                task.cancel(true);
+                throw new ReportTimeoutException(scan.timeoutMillis);
+            } catch (InterruptedException e) {
+                scan.cancelled.set(true);
+                task.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new ReportTimeoutException(scan.timeoutMillis);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+            long elapsedNanos = System.nanoTime() - started;
+            return toResult(scan, groups, elapsedNanos);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static ReportResult toResult(Scan scan, Map<Long, long[]> groups, long elapsedNanos) {
+        List<Map.Entry<Long, long[]>> entries = new ArrayList<>(groups.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue()[1], a.getValue()[1]));
+        List<ReportRow> rows = new ArrayList<>(Math.min(entries.size(), scan.limit));
+        for (Map.Entry<Long, long[]> entry : entries.subList(0, Math.min(entries.size(), scan.limit))) {
+            long[] totals = entry.getValue();
+            rows.add(new ReportRow(scan.describe(entry.getKey()), totals[2], totals[0], totals[1] / 100.0));
+        }
+        long scannedOrders = scan.scannedOrders.sum();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        long ordersPerSecond = elapsedNanos > 0 ? scannedOrders * 1_000_000_000L / elapsedNanos : scannedOrders;
+        return new ReportResult(rows, scannedOrders, scan.scannedLines.sum(), elapsedMillis, ordersPerSecond);
+    }
+
+    /**
+     * Book attributes needed by reports, copied into primitive arrays. Books are found by ID
+     * with linear probing in a table sized by the number of books, so a large book ID costs
+     * no more than a small one. Book IDs are positive, which lets 0 mark an empty slot.
+     */
+    private static final class Catalog {
+        final int[] ids;
+        final int[] authorOf;
+        final int[] yearOf;
+
+        private Catalog(int capacity) {
+            this.ids = new int[capacity];
+            this.authorOf = new int[capacity];
+            this.yearOf = new int[capacity];
+        }
+
+        static Catalog snapshot() {
+            List<Book> books = DataStore.getAllBooks();
+            // At most half full, so probe runs stay short
+            Catalog catalog = new Catalog(Integer.highestOneBit(Math.max(1, books.size()) * 4 - 1));
+            int mask = catalog.ids.length - 1;
+            for (Book book : books) {
+                int slot = hash(book.getId()) & mask;
+                while (catalog.ids[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                catalog.ids[slot] = book.getId();
+                catalog.authorOf[slot] = book.getAuthorId();
+                catalog.yearOf[slot] = book.getPublicationYear();
+            }
+            return catalog;
+        }
+
+        /**
+         * @param bookId ID of a book
+         * @return Slot of the book for {@link #authorAt} and {@link #yearAt}, or -1 if it is not in the catalog
+         */
+        int slotOf(int bookId) {
+            int mask = ids.length - 1;
+            int slot = hash(bookId) & mask;
+            while (ids[slot] != 0) {
+                if (ids[slot] == bookId) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        int authorAt(int slot) {
+            return slot >= 0 ? authorOf[slot] : 0;
+        }
+
+        int yearAt(int slot) {
+            return slot >= 0 ? yearOf[slot] : 0;
+        }
+
+        private static int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    /**
+     * Validated query state shared by all tasks of one report
+     */
+    private static final class Scan {
+        final Catalog catalog;
+        final OrderHistoryStore.Snapshot orders;
+        final Dimension[] dimensions;
+        final int authorId;
+        final int bookId;
+        final int customerId;
+        final int fromOrderId;
+        final int toOrderId;
+        final int fromYear;
+        final int toYear;
+        final long fromTime;
+        final long toTime;
+        final int limit;
+        final long timeoutMillis;
+        final long deadline;
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final LongAdder scannedOrders = new LongAdder();
+        final LongAdder scannedLines = new LongAdder();
+
+        Scan(ReportQuery query) {
+            if (query == null) {
+                throw new InvalidInputException("Report query is required");
+            }
+            List<String> groupBy = query.getGroupBy() != null ? query.getGroupBy() : new ArrayList<>();
+            if (groupBy.size() > MAX_GROUP_BY) {
+                throw new InvalidInputException("A report can be grouped by at most " + MAX_GROUP_BY + " dimensions");
+            }
+            dimensions = new Dimension[groupBy.size()];
+            for (int i = 0; i < dimensions.length; i++) {
+                dimensions[i] = Dimension.fromLabel(groupBy.get(i));
+                if (dimensions[i] == null) {
+                    throw new InvalidInputException("Unknown group-by dimension: " + groupBy.get(i) +
+                            "; expected author, book, customer, decade or year");
+                }
+            }
+            this.authorId = valueOr(query.getAuthorId(), 0);
+            this.bookId = valueOr(query.getBookId(), 0);
+            this.customerId = valueOr(query.getCustomerId(), 0);
+            this.fromOrderId = valueOr(query.getFromOrderId(), Integer.MIN_VALUE);
+            this.toOrderId = valueOr(query.getToOrderId(), Integer.MAX_VALUE);
+            this.fromYear = valueOr(query.getFromYear(), Integer.MIN_VALUE);
+            this.toYear = valueOr(query.getToYear(), Integer.MAX_VALUE);
+            this.fromTime = query.getFromTime() != null ? query.getFromTime() : Long.MIN_VALUE;
+            this.toTime = query.getToTime() != null ? query.getToTime() : Long.MAX_VALUE;
+            this.limit = valueOr(query.getLimit(), DEFAULT_LIMIT);
+            if (limit <= 0 || limit > MAX_LIMIT) {
+                throw new InvalidInputException("Report limit must be between 1 and " + MAX_LIMIT);
+            }
+            this.timeoutMillis = query.getTimeoutMillis() != null ? query.getTimeoutMillis() : DEFAULT_TIMEOUT_MILLIS;
+            if (timeoutMillis <= 0 || timeoutMillis > MAX_TIMEOUT_MILLIS) {
+                throw new InvalidInputException("Report timeout must be between 1 and " + MAX_TIMEOUT_MILLIS + " ms");
+            }
+            this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            // Taken within the budget, and only for valid queries
+            this.catalog = Catalog.snapshot();
+            this.orders = DataStore.getOrderSnapshot();
+        }
+
+        boolean matches(PackedOrder order) {
+            return order.getId() >= fromOrderId && order.getId() <= toOrderId
+                    && (customerId == 0 || order.getCustomerId() == customerId)
+                    && order.getCreatedAt() >= fromTime && order.getCreatedAt() < toTime;
+        }
+
+        boolean matchesLine(int lineBookId, int lineAuthorId, int lineYear) {
+            return (bookId == 0 || lineBookId == bookId)
+                    && (authorId == 0 || lineAuthorId == authorId)
+                    && lineYear >= fromYear && lineYear <= toYear;
+        }
+
+        long key(PackedOrder order, int lineBookId, int lineAuthorId, int lineYear) {
+            long key = 0;
+            for (Dimension dimension : dimensions) {
+                int value;
+                switch (dimension) {
+                    case AUTHOR: value = lineAuthorId; break;
+                    case BOOK: value = lineBookId; break;
+                    case CUSTOMER: value = order.getCustomerId(); break;
+                    case DECADE: value = lineYear - Math.floorMod(lineYear, 10); break;
+                    default: value = lineYear; break;
+                }
+                key = (key << 32) | (value & 0xffffffffL);
+            }
+            return key;
+        }
+
+        Map<String, Integer> describe(long key) {
+            Map<String, Integer> group = new LinkedHashMap<>();
+            for (int i = 0; i < dimensions.length; i++) {
+                int shift = 32 * (dimensions.length - 1 - i);
+                group.put(dimensions[i].label, (int) (key >>> shift));
+            }
+            return group;
+        }
+
+        boolean expired() {
+            return cancelled.get() || System.nanoTime() - deadline > 0;
+        }
+
+        private static int valueOr(Integer value, int defaultValue) {
+            return value != null ? value : defaultValue;
+        }
+    }
+
+    /**
+     * Scans a range of the order snapshot, splitting it until ranges are small enough.
+     * Each group accumulates {units, revenue cents, orders, last order ID seen}.
+     */
+    private static final class ScanTask extends RecursiveTask<Map<Long, long[]>> {
+        private final Scan scan;
+        private final int from;
+        private final int to;
+
+        ScanTask(Scan scan, int from, int to) {
+            this.scan = scan;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<Long, long[]> compute() {
+            if (to - from > LEAF_SIZE) {
+                int mid = (from + to) >>> 1;
+                ScanTask left = new ScanTask(scan, from, mid);
+                left.fork();
+                Map<Long, long[]> right = new ScanTask(scan, mid, to).compute();
+                return merge(left.join(), right);
+            }
+            Map<Long, long[]> groups = new HashMap<>();
+            long lines = 0;
+            for (int i = from; i < to; i++) {
+                if ((i & DEADLINE_CHECK_MASK) == 0 && scan.expired()) {
+                    throw new CancellationException("Report cancelled");
+                }
+                PackedOrder order = scan.orders.get(i);
+                if (!scan.matches(order)) {
+                    continue;
+                }
+                for (int line = 0; line < order.lineCount(); line++) {
+                    int lineBookId = order.bookIdAt(line);
+                    int slot = scan.catalog.slotOf(lineBookId);
+                    int lineAuthorId = scan.catalog.authorAt(slot);
+                    int lineYear = scan.catalog.yearAt(slot);
+                    lines++;
+                    if (!scan.matchesLine(lineBookId, lineAuthorId, lineYear)) {
+                        continue;
+                    }
+                    long[] totals = groups.computeIfAbsent(scan.key(order, lineBookId, lineAuthorId, lineYear),
+                            k -> new long[] {0, 0, 0, -1});
+                    totals[0] += order.quantityAt(line);
+                    totals[1] += (long) order.unitPriceCentsAt(line) * order.quantityAt(line);
+                    if (totals[3] != order.getId()) {
+                        totals[2]++;
+                        totals[3] = order.getId();
+                    }
+                }
+            }
+            scan.scannedOrders.add(to - from);
+            scan.scannedLines.add(lines);
+            return groups;
+        }
+
+        private static Map<Long, long[]> merge(Map<Long, long[]> into, Map<Long, long[]> from) {
+            if (into.size() < from.size()) {
+                Map<Long, long[]> swap = into;
+                into = from;
+                from = swap;
+            }
+            for (Map.Entry<Long, long[]> entry : from.entrySet()) {
+                long[] source = entry.getValue();
+                long[] target = into.get(entry.getKey());
+                if (target == null) {
+                    into.put(entry.getKey(), source);
+                } else {
+                    target[0] += source[0];
+                    target[1] += source[1];
+                    target[2] += source[2];
+                }
+            }
+            return into;
+        }
+    }
+}
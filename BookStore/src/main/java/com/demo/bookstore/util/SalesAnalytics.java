@@ -0,0 +1,447 @@
+package com.demo.bookstore.util;
+
+import com.demo.bookstore.model.Book;
+import com.demo.bookstore.model.CartItem;
+import com.demo.bookstore.model.Order;
+import com.demo.bookstore.model.SalesFigure;
+import com.demo.bookstore.model.SalesTotals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Running sales aggregates fed by order placement.
+ * Checkout only appends each sale to a lock-free queue. A single aggregator thread
+ * owns every counter, rolls the 1m/1h/24h windows and republishes the top-K lists
+ * once a second, so reads are O(1) or O(K) and never contend with checkout.
+ */
+public final class SalesAnalytics {
+
+    private static final Logger LOGGER = Logger.getLogger(SalesAnalytics.class.getName());
+
+    /**
+     * Time windows served by the analytics endpoints
+     */
+    public enum Window {
+        MINUTE("1m", 1000L, 60),
+        HOUR("1h", 60_000L, 60),
+        DAY("24h", 3_600_000L, 24),
+        ALL("all", 0L, 0);
+
+        private final String label;
+        private final long bucketMillis;
+        private final int bucketCount;
+
+        Window(String label, long bucketMillis, int bucketCount) {
+            this.label = label;
+            this.bucketMillis = bucketMillis;
+            this.bucketCount = bucketCount;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        /**
+         * Look up a window by its label
+         * @param label Label such as "1h"
+         * @return Matching window, or null if none matches
+         */
+        public static Window fromLabel(String label) {
+            for (Window window : values()) {
+                if (window.label.equals(label)) {
+                    return window;
+                }
+            }
+            return null;
+        }
+    }
+
+    public static final int MAX_K = 100;
+    private static final long PUBLISH_INTERVAL_MILLIS = 1000;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private static final ConcurrentLinkedQueue<Sale> pending = new ConcurrentLinkedQueue<>();
+    private static final Counts allTime = new Counts(true);
+    private static final Map<Window, RollingWindow> windows = new EnumMap<>(Window.class);
+    private static volatile Map<Window, Rankings> published = new EnumMap<>(Window.class);
+    private static volatile List<SalesTotals> hourly = new ArrayList<>();
+
+    static {
+        for (Window window : Window.values()) {
+            if (window != Window.ALL) {
+                windows.put(window, new RollingWindow(window));
+            }
+        }
+        Thread aggregator = new Thread(SalesAnalytics::runAggregator, "sales-analytics");
+        aggregator.setDaemon(true);
+        aggregator.start();
+    }
+
+    private SalesAnalytics() {
+    }
+
+    /**
+     * Queue a placed order for aggregation. Only copies primitives on the caller's thread.
+     * @param order Placed order
+     * @param books Books of the order's line items, in the same order as the items
+     * @param unitPrices Price charged per unit for each line item, which may differ from the
+     *                   book's current catalog price
+     */
+    public static void recordOrder(Order order, List<Book> books, double[] unitPrices) {
+        List<CartItem> items = order.getItems();
+        int lines = items.size();
+        Sale sale = new Sale(order.getCreatedAt(), lines);
+        for (int i = 0; i < lines; i++) {
+            Book book = books.get(i);
+            int quantity = items.get(i).getQuantity();
+            sale.bookIds[i] = book.getId();
+            sale.authorIds[i] = book.getAuthorId();
+            sale.quantities[i] = quantity;
+            sale.revenueCents[i] = PackedOrder.toCents(unitPrices[i]) * quantity;
+        }
+        pending.offer(sale);
+    }
+
+    /**
+     * Discard every sale aggregated so far, e.g. those of a warm-up run. Waits until the
+     * aggregator has dropped them; sales recorded afterwards are counted as usual.
+     */
+    public static void reset() {
+        Sale marker = new Sale(0, 0, new CountDownLatch(1));
+        pending.offer(marker);
+        try {
+            if (!marker.resetDone.await(10, TimeUnit.SECONDS)) {
+                LOGGER.warning("Timed out waiting for sales analytics to reset");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Best-selling books by units within a window
+     * @param window Time window
+     * @param k Maximum number of books, at most {@link #MAX_K}
+     * @return Books ranked by units sold
+     */
+    public static List<SalesFigure> topBooks(Window window, int k) {
+        Rankings rankings = published.get(window);
+        return rankings == null ? new ArrayList<>() : head(rankings.books, k);
+    }
+
+    /**
+     * Authors ranked by revenue within a window
+     * @param window Time window
+     * @param k Maximum number of authors, at most {@link #MAX_K}
+     * @return Authors ranked by revenue
+     */
+    public static List<SalesFigure> topAuthors(Window window, int k) {
+        Rankings rankings = published.get(window);
+        return rankings == null ? new ArrayList<>() : head(rankings.authors, k);
+    }
+
+    /**
+     * Units and revenue of one book within a window
+     * @param window Time window
+     * @param bookId ID of the book
+     * @return Sales figure of the book
+     */
+    public static SalesFigure bookSales(Window window, int bookId) {
+        Counts counts = countsFor(window);
+        return new SalesFigure(bookId, counts.unitsByBook.getOrDefault(bookId, 0L),
+                counts.revenueByBook.getOrDefault(bookId, 0L) / 100.0);
+    }
+
+    /**
+     * Total units and revenue within a window
+     * @param window Time window
+     * @return Window totals
+     */
+    public static SalesTotals totals(Window window) {
+        Counts counts = countsFor(window);
+        RollingWindow rolling = windows.get(window);
+        long start = rolling != null ? rolling.oldestStart() : 0L;
+        return new SalesTotals(window.getLabel(), start, counts.units, counts.revenueCents / 100.0);
+    }
+
+    /**
+     * Units and revenue per hour over the last 24 hours, oldest first
+     * @return Hourly totals
+     */
+    public static List<SalesTotals> hourlyTotals() {
+        return hourly;
+    }
+
+    private static Counts countsFor(Window window) {
+        return window == Window.ALL ? allTime : windows.get(window).totals;
+    }
+
+    private static List<SalesFigure> head(List<SalesFigure> ranking, int k) {
+        return new ArrayList<>(ranking.subList(0, Math.min(Math.max(k, 0), ranking.size())));
+    }
+
+    private static void runAggregator() {
+        boolean dirty = false;
+        long nextPublish = 0;
+        while (true) {
+            try {
+                long now = System.currentTimeMillis();
+                for (RollingWindow window : windows.values()) {
+                    dirty |= window.advance(now);
+                }
+                Sale sale;
+                while ((sale = pending.poll()) != null) {
+                    if (sale.resetDone != null) {
+                        allTime.clear();
+                        for (RollingWindow window : windows.values()) {
+                            window.clear(now);
+                        }
+                        publish();
+                        dirty = false;
+                        sale.resetDone.countDown();
+                        continue;
+                    }
+                    allTime.add(sale, 1);
+                    for (RollingWindow window : windows.values()) {
+                        window.add(sale);
+                    }
+                    dirty = true;
+                }
+                if (dirty && now >= nextPublish) {
+                    publish();
+                    dirty = false;
+                    nextPublish = now + PUBLISH_INTERVAL_MILLIS;
+                }
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Sales aggregation failed", e);
+            }
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    private static void publish() {
+        Map<Window, Rankings> rankings = new EnumMap<>(Window.class);
+        for (Window window : Window.values()) {
+            Counts counts = countsFor(window);
+            rankings.put(window, new Rankings(
+                    rank(counts.unitsByBook, counts.unitsByBook, counts.revenueByBook),
+                    rank(counts.revenueByAuthor, counts.unitsByAuthor, counts.revenueByAuthor)));
+        }
+        published = rankings;
+        hourly = windows.get(Window.DAY).bucketTotals(Window.HOUR.getLabel());
+    }
+
+    private static List<SalesFigure> rank(Map<Integer, Long> rankBy, Map<Integer, Long> units, Map<Integer, Long> revenue) {
+        PriorityQueue<Map.Entry<Integer, Long>> top = new PriorityQueue<>(MAX_K + 1, Map.Entry.comparingByValue());
+        for (Map.Entry<Integer, Long> entry : rankBy.entrySet()) {
+            top.offer(Map.entry(entry.getKey(), entry.getValue()));
+            if (top.size() > MAX_K) {
+                top.poll();
+            }
+        }
+        List<SalesFigure> ranking = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            int id = top.poll().getKey();
+            ranking.add(new SalesFigure(id, units.getOrDefault(id, 0L), revenue.getOrDefault(id, 0L) / 100.0));
+        }
+        Collections.reverse(ranking);
+        return Collections.unmodifiableList(ranking);
+    }
+
+    private static final class Rankings {
+        final List<SalesFigure> books;
+        final List<SalesFigure> authors;
+
+        Rankings(List<SalesFigure> books, List<SalesFigure> authors) {
+            this.books = books;
+            this.authors = authors;
+        }
+    }
+
+    /**
+     * One placed order reduced to primitive line data, or a marker asking the aggregator to reset
+     */
+    private static final class Sale {
+        final long time;
+        final int[] bookIds;
+        final int[] authorIds;
+        final int[] quantities;
+        final long[] revenueCents;
+        final CountDownLatch resetDone; // null unless this is a reset marker
+
+        Sale(long time, int lines) {
+            this(time, lines, null);
+        }
+
+        Sale(long time, int lines, CountDownLatch resetDone) {
+            this.time = time;
+            this.resetDone = resetDone;
+            this.bookIds = new int[lines];
+            this.authorIds = new int[lines];
+            this.quantities = new int[lines];
+            this.revenueCents = new long[lines];
+        }
+    }
+
+    /**
+     * Units and revenue keyed by book and author. Only the aggregator thread writes;
+     * the concurrent variant is also read by request threads.
+     */
+    private static final class Counts {
+        final Map<Integer, Long> unitsByBook;
+        final Map<Integer, Long> revenueByBook;
+        final Map<Integer, Long> unitsByAuthor;
+        final Map<Integer, Long> revenueByAuthor;
+        volatile long units;
+        volatile long revenueCents;
+
+        Counts(boolean concurrent) {
+            unitsByBook = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+            revenueByBook = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+            unitsByAuthor = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+            revenueByAuthor = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+        }
+
+        void add(Sale sale, int sign) {
+            long saleUnits = 0;
+            long saleRevenue = 0;
+            for (int i = 0; i < sale.bookIds.length; i++) {
+                merge(unitsByBook, sale.bookIds[i], sign * (long) sale.quantities[i]);
+                merge(revenueByBook, sale.bookIds[i], sign * sale.revenueCents[i]);
+                merge(unitsByAuthor, sale.authorIds[i], sign * (long) sale.quantities[i]);
+                merge(revenueByAuthor, sale.authorIds[i], sign * sale.revenueCents[i]);
+                saleUnits += sale.quantities[i];
+                saleRevenue += sale.revenueCents[i];
+            }
+            units += sign * saleUnits;
+            revenueCents += sign * saleRevenue;
+        }
+
+        void subtract(Counts other) {
+            other.unitsByBook.forEach((id, value) -> merge(unitsByBook, id, -value));
+            other.revenueByBook.forEach((id, value) -> merge(revenueByBook, id, -value));
+            other.unitsByAuthor.forEach((id, value) -> merge(unitsByAuthor, id, -value));
+            other.revenueByAuthor.forEach((id, value) -> merge(revenueByAuthor, id, -value));
+            units -= other.units;
+            revenueCents -= other.revenueCents;
+        }
+
+        void clear() {
+            unitsByBook.clear();
+            revenueByBook.clear();
+            unitsByAuthor.clear();
+            revenueByAuthor.clear();
+            units = 0;
+            revenueCents = 0;
+        }
+
+        private static void merge(Map<Integer, Long> map, int key, long delta) {
+            map.compute(key, (k, value) -> {
+                long result = (value == null ? 0 : value) + delta;
+                return result == 0 ? null : result;
+            });
+        }
+    }
+
+    /**
+     * Ring of fixed-width buckets with running totals over the whole ring.
+     * Expiring a bucket subtracts its counts from the totals before it is reused.
+     */
+    private static final class RollingWindow {
+        final Window window;
+        final Counts[] buckets;
+        final long[] starts;
+        final Counts totals = new Counts(true);
+        long newestStart = Long.MIN_VALUE;
+
+        RollingWindow(Window window) {
+            this.window = window;
+            this.buckets = new Counts[window.bucketCount];
+            this.starts = new long[window.bucketCount];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new Counts(false);
+            }
+        }
+
+        void add(Sale sale) {
+            long start = bucketStart(sale.time);
+            if (start > newestStart) {
+                advance(sale.time);
+            }
+            int index = index(start);
+            if (starts[index] != start) {
+                return; // older than the window
+            }
+            buckets[index].add(sale, 1);
+            totals.add(sale, 1);
+        }
+
+        boolean advance(long now) {
+            long target = bucketStart(now);
+            if (target <= newestStart) {
+                return false;
+            }
+            if (newestStart == Long.MIN_VALUE || target - newestStart >= window.bucketMillis * buckets.length) {
+                for (Counts bucket : buckets) {
+                    bucket.clear();
+                }
+                totals.clear();
+                for (int i = 0; i < buckets.length; i++) {
+                    long start = target - i * window.bucketMillis;
+                    starts[index(start)] = start;
+                }
+                newestStart = target;
+                return true;
+            }
+            while (newestStart < target) {
+                newestStart += window.bucketMillis;
+                int index = index(newestStart);
+                totals.subtract(buckets[index]);
+                buckets[index].clear();
+                starts[index] = newestStart;
+            }
+            return true;
+        }
+
+        void clear(long now) {
+            newestStart = Long.MIN_VALUE;
+            advance(now); // with no newest bucket, advance starts every bucket afresh
+        }
+
+        long oldestStart() {
+            long newest = newestStart;
+            return newest == Long.MIN_VALUE ? 0L : newest - (buckets.length - 1) * window.bucketMillis;
+        }
+
+        List<SalesTotals> bucketTotals(String label) {
+            List<SalesTotals> result = new ArrayList<>(buckets.length);
+            for (int i = buckets.length - 1; i >= 0; i--) {
+                long start = newestStart - i * window.bucketMillis;
+                Counts bucket = buckets[index(start)];
+                result.add(new SalesTotals(label, start, bucket.units, bucket.revenueCents / 100.0));
+            }
+            return Collections.unmodifiableList(result);
+        }
+
+        private long bucketStart(long time) {
+            return time - Math.floorMod(time, window.bucketMillis);
+        }
+
+        private int index(long start) {
+            return (int) Math.floorMod(start / window.bucketMillis, (long) buckets.length);
+        }
+    }
+}
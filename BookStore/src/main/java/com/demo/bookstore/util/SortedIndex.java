@@ -0,0 +1,148 @@
+package com.demo.bookstore.util;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Concurrent index of entity IDs sorted by a numeric attribute, kept in a skip list so a
+ * range scan costs O(log n) to find its start plus one step per entry returned. Entries
+ * are ordered by value, then by ID, which makes every key unique and gives a stable order
+ * to resume a scan from. The index holds keys only; callers resolve the IDs and should
+ * skip an entry whose entity no longer has that value, as a scan may pass an entry in the
+ * moment between an update adding the new key and removing the old one.
+ */
+public final class SortedIndex {
+
+    private final ConcurrentSkipListSet<Key> keys = new ConcurrentSkipListSet<>();
+
+    public void add(int id, double value) {
+        keys.add(new Key(value, id));
+    }
+
+    public void remove(int id, double value) {
+        keys.remove(new Key(value, id));
+    }
+
+    public void clear() {
+        keys.clear();
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * Scan the keys whose value lies within a range
+     * @param min Inclusive lower bound of the value
+     * @param max Inclusive upper bound of the value
+     * @param descending True to scan from the highest value down
+     * @param after Key to resume after, as returned for the previous page, or null to start
+     * @return Weakly consistent iterator over the keys in range
+     */
+    public Iterator<Key> scan(double min, double max, boolean descending, Key after) {
+        Key low = new Key(min, Integer.MIN_VALUE);
+        Key high = new Key(max, Integer.MAX_VALUE);
+        boolean lowInclusive = true;
+        boolean highInclusive = true;
+        if (after != null && !descending && after.compareTo(low) >= 0) {
+            low = after;
+            lowInclusive = false;
+        } else if (after != null && descending && after.compareTo(high) <= 0) {
+            high = after;
+            highInclusive = false;
+        }
+        if (low.compareTo(high) > 0) {
+            return Collections.emptyIterator();
+        }
+        NavigableSet<Key> range = keys.subSet(low, lowInclusive, high, highInclusive);
+        return (descending ? range.descendingSet() : range).iterator();
+    }
+
+    /**
+     * One page of a range scan
+     * @param <T> Type of the entities
+     */
+    public static final class Page<T> {
+        private final List<T> items;
+        private final Key next;
+
+        public Page(List<T> items, Key next) {
+            this.items = items;
+            this.next = next;
+        }
+
+        public List<T> getItems() {
+            return items;
+        }
+
+        /**
+         * @return Key to resume the scan after, or null if this is the last page
+         */
+        public Key getNext() {
+            return next;
+        }
+    }
+
+    /**
+     * Position in the index: a value and the ID of the entity that has it
+     */
+    public static final class Key implements Comparable<Key> {
+        private final double value;
+        private final int id;
+
+        public Key(double value, int id) {
+            this.value = value;
+            this.id = id;
+        }
+
+        public double getValue() {
+            return value;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Read a key written by {@link #toString()}
+         * @param text Key as {@code value:id}
+         * @return The key, or null if the text is not a key
+         */
+        public static Key parse(String text) {
+            int separator = text.lastIndexOf(':');
+            if (separator <= 0) {
+                return null;
+            }
+            try {
+                return new Key(Double.parseDouble(text.substring(0, separator)), Integer.parseInt(text.substring(separator + 1)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int byValue = Double.compare(value, other.value);
+            return byValue != 0 ? byValue : Integer.compare(id, other.id);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && compareTo((Key) other) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Double.hashCode(value) * 31 + id;
+        }
+
+        @Override
+        public String toString() {
+            // Whole numbers such as years without the trailing ".0"
+            return (value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value)) + ":" + id;
+        }
+    }
+}
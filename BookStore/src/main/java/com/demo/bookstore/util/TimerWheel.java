@@ -0,0 +1,147 @@
+package com.demo.bookstore.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timer wheel: four levels of 64 slots, each level covering 64 times the
+ * span of the one below. Scheduling and cancelling are O(1); a timeout is cascaded
+ * down a level at most three times before it expires, and expiring one tick only
+ * visits the timeouts due in that tick, so there are never full scans.
+ *
+ * @param <T> Type of the payload carried by each timeout
+ */
+public final class TimerWheel<T> {
+
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+    private final Timeout<T>[][] wheels;
+    private long currentTick;
+    private int size;
+
+    public TimerWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+        @SuppressWarnings("unchecked")
+        Timeout<T>[][] slots = (Timeout<T>[][]) new Timeout<?>[LEVELS][SLOTS];
+        this.wheels = slots;
+        for (int level = 0; level < LEVELS; level++) {
+            for (int slot = 0; slot < SLOTS; slot++) {
+                Timeout<T> sentinel = new Timeout<>(null, 0);
+                sentinel.prev = sentinel;
+                sentinel.next = sentinel;
+                wheels[level][slot] = sentinel;
+            }
+        }
+    }
+
+    /**
+     * Schedule a payload to expire at a point in time
+     * @param payload Payload returned when the timeout expires
+     * @param deadlineMillis Expiry time in epoch milliseconds
+     * @return Handle that can be used to cancel the timeout
+     */
+    public synchronized Timeout<T> schedule(T payload, long deadlineMillis) {
+        long tick = Math.min(Math.max(deadlineMillis / tickMillis, currentTick + 1), currentTick + MAX_DELTA);
+        Timeout<T> timeout = new Timeout<>(payload, tick);
+        insert(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Cancel a pending timeout; cancelling an expired or cancelled timeout does nothing
+     * @param timeout Timeout to cancel
+     */
+    public synchronized void cancel(Timeout<T> timeout) {
+        if (timeout != null && timeout.next != null) {
+            unlink(timeout);
+            size--;
+        }
+    }
+
+    /**
+     * Advance the wheel to the given time and collect every timeout that expired
+     * @param nowMillis Current time in epoch milliseconds
+     * @return Payloads of the expired timeouts
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        List<T> expired = new ArrayList<>();
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            for (int level = 1; level < LEVELS; level++) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                    break;
+                }
+                cascade(wheels[level][(int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK)]);
+            }
+            Timeout<T> head = wheels[0][(int) (currentTick & SLOT_MASK)];
+            while (head.next != head) {
+                Timeout<T> timeout = head.next;
+                unlink(timeout);
+                size--;
+                expired.add(timeout.payload);
+            }
+        }
+        return expired;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private void cascade(Timeout<T> head) {
+        while (head.next != head) {
+            Timeout<T> timeout = head.next;
+            unlink(timeout);
+            insert(timeout);
+        }
+    }
+
+    private void insert(Timeout<T> timeout) {
+        long delta = timeout.tick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        Timeout<T> head = wheels[level][(int) ((timeout.tick >>> (SLOT_BITS * level)) & SLOT_MASK)];
+        timeout.prev = head.prev;
+        timeout.next = head;
+        head.prev.next = timeout;
+        head.prev = timeout;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        timeout.prev.next = timeout.next;
+        timeout.next.prev = timeout.prev;
+        timeout.prev = null;
+        timeout.next = null;
+    }
+
+    /**
+     * Scheduled timeout, linked into one slot of the wheel until it expires or is cancelled
+     *
+     * @param <T> Type of the payload
+     */
+    public static final class Timeout<T> {
+        private final T payload;
+        private final long tick;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(T payload, long tick) {
+            this.payload = payload;
+            this.tick = tick;
+        }
+
+        public T getPayload() {
+            return payload;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.demo.bookstore.util;
+
+import com.demo.bookstore.model.Author;
+import com.demo.bookstore.model.Book;
+import com.demo.bookstore.model.Customer;
+import com.demo.bookstore.provider.BinaryFormats;
+
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import org.glassfish.grizzly.http.server.HttpHandler;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.http.server.Request;
+import org.glassfish.grizzly.http.server.Response;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpContainer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * JIT warm-up before the server takes traffic. A synthetic mix of catalog, cart and checkout
+ * requests is sent from within the process, against scratch data, until the time per round
+ * of the mix stops improving or the time budget set by {@code bookstore.warmup.millis} runs
+ * out. The requests go through a temporary listener bound to the loopback interface, so the
+ * HTTP parsing and socket code is compiled as well as Jersey's and Jackson's. The scratch
+ * data is then discarded, along with everything it produced: change events, replication
+ * log, sales, co-purchases, hot keys and metric counters.
+ */
+public final class WarmUp {
+
+    private static final Logger LOGGER = Logger.getLogger(WarmUp.class.getName());
+    private static final long BUDGET_MILLIS = Long.getLong("bookstore.warmup.millis", 0);
+
+    private static final String CONTEXT_PATH = "/api";
+    private static final int SCRATCH_AUTHORS = 10;
+    private static final int SCRATCH_BOOKS = 100;
+    // Enough that no customer comes near the rate limit
+    private static final int SCRATCH_CUSTOMERS = 1000;
+    private static final int ROUNDS_PER_SAMPLE = 250;
+    // Hot paths run well past the C2 compile thresholds before latency may count as stable
+    private static final int MIN_ROUNDS = 3000;
+    private static final int STABLE_SAMPLES = 4;
+    private static final double STABLE_SPREAD = 0.10;
+
+    private WarmUp() {
+    }
+
+    public static boolean isEnabled() {
+        return BUDGET_MILLIS > 0;
+    }
+
+    /**
+     * Warm up the application and empty the {@link DataStore} again
+     * @param container Jersey application the server is about to serve
+     * @param readOnly True to send only catalog reads, as a read-only replica serves
+     */
+    public static void run(GrizzlyHttpContainer container, boolean readOnly) {
+        long started = System.nanoTime();
+        long deadline = started + TimeUnit.MILLISECONDS.toNanos(BUDGET_MILLIS);
+        int[] authorIds = new int[SCRATCH_AUTHORS];
+        int[] bookIds = new int[SCRATCH_BOOKS];
+        int[] customerIds = new int[SCRATCH_CUSTOMERS];
+        for (int i = 0; i < authorIds.length; i++) {
+            authorIds[i] = DataStore.addAuthor(new Author(0, "Warm-up", "Author " + i, "Scratch author")).getId();
+        }
+        for (int i = 0; i < bookIds.length; i++) {
+            bookIds[i] = DataStore.addBook(new Book(0, "Warm-up book " + i, authorIds[i % authorIds.length],
+                    "9780000000000", 2000 + i % 20, 5 + i % 30, 1_000_000)).getId();
+        }
+        // In cluster mode, only customers this node owns, or the requests would be forwarded to its peers
+        for (int i = 0, created = 0; i < customerIds.length; created++) {
+            int id = DataStore.addCustomer(new Customer(0, "Warm-up", "Customer " + created,
+                    "warmup" + created + "@example.com", "warmup123")).getId();
+            if (Cluster.owns(id)) {
+                customerIds[i++] = id;
+            }
+        }
+
+        // Any free port, reachable from this host only
+        HttpServer loopback = new HttpServer();
+        NetworkListener listener = new NetworkListener("warm-up", "127.0.0.1", 0);
+        loopback.addListener(listener);
+        // Delegate rather than register the container itself, which shutting down would destroy
+        loopback.getServerConfiguration().addHttpHandler(new HttpHandler() {
+            @Override
+            public void service(Request request, Response response) throws Exception {
+                container.service(request, response);
+            }
+        }, CONTEXT_PATH);
+        try {
+            loopback.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to start the warm-up listener", e);
+        }
+        URI baseUri = URI.create("http://127.0.0.1:" + listener.getPort() + CONTEXT_PATH + "/");
+
+        // The resources log every request; keep the warm-up's out of the log
+        Logger appLogger = Logger.getLogger("com.demo.bookstore");
+        Level appLevel = appLogger.getLevel();
+        appLogger.setLevel(Level.WARNING);
+        double[] samples = new double[STABLE_SAMPLES];
+        double firstSample = 0;
+        double lastSample = 0;
+        int sampleCount = 0;
+        int rounds = 0;
+        int requests = 0;
+        int failures = 0;
+        boolean stable = false;
+        try {
+            while (!stable) {
+                long sampleStart = System.nanoTime();
+                int i = 0;
+                for (; i < ROUNDS_PER_SAMPLE && System.nanoTime() < deadline; i++, rounds++) {
+                    Round round = new Round(baseUri, rounds % 4 == 3 ? BinaryFormats.APPLICATION_SMILE : MediaType.APPLICATION_JSON);
+                    int book = bookIds[rounds % bookIds.length];
+                    int customer = customerIds[rounds % customerIds.length];
+                    round.send("GET", "books/" + book, null);
+                    round.send("GET", "authors/" + authorIds[rounds % authorIds.length], null);
+                    if (rounds % 10 == 0) {
+                        round.send("GET", "books?fields=id,title,price,stock", null);
+                    }
+                    if (!readOnly) {
+                        round.send("GET", "customers/" + customer, null);
+                        round.send("POST", "customers/" + customer + "/cart/items", "{\"bookId\":" + book + ",\"quantity\":1}");
+                        round.send("PUT", "customers/" + customer + "/cart/items/" + book, "{\"bookId\":" + book + ",\"quantity\":2}");
+                        round.send("GET", "customers/" + customer + "/cart", null);
+                        round.send("POST", "customers/" + customer + "/orders", null);
+                        round.send("GET", "customers/" + customer + "/orders", null);
+                    }
+                    requests += round.requests;
+                    failures += round.failures;
+                }
+                if (i < ROUNDS_PER_SAMPLE) {
+                    break; // out of time
+                }
+                lastSample = (System.nanoTime() - sampleStart) / 1000.0 / ROUNDS_PER_SAMPLE;
+                if (sampleCount == 0) {
+                    firstSample = lastSample;
+                }
+                samples[sampleCount++ % STABLE_SAMPLES] = lastSample;
+                stable = rounds >= MIN_ROUNDS && isStable(samples);
+            }
+        } finally {
+            appLogger.setLevel(appLevel);
+            loopback.shutdownNow();
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        String summary = String.format("Warm-up %s after %d rounds (%d requests) in %d ms",
+                stable ? "stabilized" : "used up its time budget", rounds, requests, elapsedMillis);
+        if (sampleCount > 0) {
+            summary += String.format("; round time went from %.0f us to %.0f us", firstSample, lastSample);
+        }
+        LOGGER.info(summary);
+        if (failures > 0) {
+            LOGGER.warning("Warm-up: " + failures + " of " + requests + " requests failed");
+        }
+
+        DataStore.reset();
+        SalesAnalytics.reset();
+        CoPurchases.reset();
+        HotKeys.reset();
+        Metrics.resetCounters();
+    }
+
+    // The last samples are within STABLE_SPREAD of each other
+    private static boolean isStable(double[] samples) {
+        double min = Double.MAX_VALUE;
+        double max = 0;
+        for (double sample : samples) {
+            min = Math.min(min, sample);
+            max = Math.max(max, sample);
+        }
+        return min > 0 && max <= min * (1 + STABLE_SPREAD);
+    }
+
+    /**
+     * Requests of one round of the mix, all asking for the same representation
+     */
+    private static final class Round {
+        final URI baseUri;
+        final String accept;
+        int requests;
+        int failures;
+
+        Round(URI baseUri, String accept) {
+            this.baseUri = baseUri;
+            this.accept = accept;
+        }
+
+        // HttpURLConnection keeps the connection alive and stays on the calling thread, so the
+        // client takes less of the warm-up's CPU time than HttpClient would
+        void send(String method, String path, String json) {
+            requests++;
+            try {
+                HttpURLConnection connection = (HttpURLConnection) baseUri.resolve(path).toURL().openConnection();
+                connection.setRequestMethod(method);
+                connection.setRequestProperty(HttpHeaders.ACCEPT, accept);
+                if (json != null) {
+                    connection.setRequestProperty(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON);
+                    connection.setDoOutput(true);
+                    try (OutputStream out = connection.getOutputStream()) {
+                        out.write(json.getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+                int status = connection.getResponseCode();
+                try (InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream()) {
+                    if (in != null) {
+                        in.transferTo(OutputStream.nullOutputStream());
+                    }
+                }
+                if (status >= 400) {
+                    failures++;
+                }
+            } catch (IOException e) {
+                failures++;
+            }
+        }
+    }
+}